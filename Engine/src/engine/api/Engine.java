@@ -1,18 +1,39 @@
 package engine.api;
 
 import engine.version.manager.api.VersionManagerGetters;
+import sheet.api.RecalculationMode;
 import sheet.api.SheetGetters;
 import sheet.cell.api.CellGetters;
 
+import java.util.concurrent.ForkJoinPool;
+
 public interface Engine {
 
     void readXMLInitFile(String filename);
+    void readXMLInitFileWithJAXB(String filename);
+    void writeXMLFile(String filename, int version);
+    void readBinaryFile(String filename);
+    void writeBinaryFile(String filename);
+    void openSheetFile(String filename);
+    void writeSheetFile(String filename);
+    void readCSVFile(String filename);
+    void writeCSVFile(String filename, int version, boolean writeOriginalValues);
+    void startJournal(String filename);
+    void recoverBinaryFile(String filename);
     SheetGetters getSheetStatus();
     CellGetters getCellStatus(SheetGetters sheet, String cellName);
     CellGetters getCellStatus(String cellName);
     CellGetters getCellStatus(int row, int col);
     CellGetters getCellStatus(SheetGetters sheet, int row, int col);
     void updateCellStatus(String cellName, String value);
+    void undo();
+    void redo();
+    boolean canUndo();
+    boolean canRedo();
+    void setRecalculationMode(RecalculationMode recalculationMode);
+    // The pool the sheets recalculate in when they're in the parallel mode, the common pool when it's null.
+    void setRecalculationPool(ForkJoinPool recalculationPool);
     VersionManagerGetters getVersionsManagerStatus();
+    void setRetentionPolicy(int keepLast, int thinInterval, long maxBytes);
     void exit();
 }
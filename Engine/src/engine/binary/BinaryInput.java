@@ -0,0 +1,136 @@
+package engine.binary;
+
+import sheet.coordinate.api.Coordinate;
+import sheet.coordinate.impl.CoordinateFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads what BinaryOutput wrote, through a buffer over a file channel.
+public class BinaryInput implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final List<String> strings;
+
+    private BinaryInput(FileChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        this.strings = new ArrayList<>();
+    }
+
+    public static BinaryInput open(Path path) throws IOException {
+        return new BinaryInput(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    public int readByte() throws IOException {
+        ensureAvailable(1);
+        return buffer.get() & 0xFF;
+    }
+
+    public int readInt() throws IOException {
+        ensureAvailable(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    public int readVarInt() throws IOException {
+
+        int value = 0;
+
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            int next = readByte();
+            value |= (next & 0x7F) << shift;
+
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new StreamCorruptedException("Variable length integer is too long");
+    }
+
+    public long readVarLong() throws IOException {
+
+        long value = 0;
+
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int next = readByte();
+            value |= (long) (next & 0x7F) << shift;
+
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new StreamCorruptedException("Variable length long is too long");
+    }
+
+    public String readString() throws IOException {
+
+        int tag = readVarInt();
+
+        if (tag == 0) {
+            return null;
+        }
+
+        if (tag > 1) {
+            if (tag - 2 >= strings.size()) {
+                throw new StreamCorruptedException("String " + (tag - 2) + " was not written before");
+            }
+
+            return strings.get(tag - 2);
+        }
+
+        byte[] bytes = new byte[readVarInt()];
+
+        for (int offset = 0; offset < bytes.length; ) {
+            ensureAvailable(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(value);
+
+        return value;
+    }
+
+    public Coordinate readCoordinate() throws IOException {
+        int row = readVarInt();
+        return CoordinateFactory.createCoordinate(row, readVarInt());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void ensureAvailable(int bytes) throws IOException {
+
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+
+        buffer.compact();
+
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("The file ended in the middle of a record");
+            }
+        }
+
+        buffer.flip();
+    }
+}
@@ -0,0 +1,129 @@
+package engine.binary;
+
+import sheet.coordinate.api.CoordinateGetters;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Writes the binary sheet format to a file channel through a buffer. Numbers are written as variable length
+// integers, so the small ones that fill a sheet take a byte or two. Every string is written once, and every
+// later occurrence of it is written as its index.
+public class BinaryOutput implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> strings;
+
+    private BinaryOutput(FileChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.strings = new HashMap<>();
+    }
+
+    public static BinaryOutput create(Path path) throws IOException {
+        return new BinaryOutput(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    public void writeByte(int value) throws IOException {
+        ensureRemaining(1);
+        buffer.put((byte) value);
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    // Seven bits per byte, the high bit tells whether another byte follows. Negative values take five bytes.
+    public void writeVarInt(int value) throws IOException {
+
+        ensureRemaining(5);
+
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put((byte) value);
+    }
+
+    public void writeVarLong(long value) throws IOException {
+
+        ensureRemaining(10);
+
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put((byte) value);
+    }
+
+    // 0 for null, 1 followed by the UTF-8 bytes for a new string, and the index of a string plus 2 for a string
+    // that was already written.
+    public void writeString(String value) throws IOException {
+
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        Integer index = strings.get(value);
+
+        if (index != null) {
+            writeVarInt(index + 2);
+            return;
+        }
+
+        strings.put(value, strings.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(1);
+        writeVarInt(bytes.length);
+
+        for (int offset = 0; offset < bytes.length; ) {
+            ensureRemaining(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    public void writeCoordinate(CoordinateGetters coordinate) throws IOException {
+        writeVarInt(coordinate.getRow());
+        writeVarInt(coordinate.getCol());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            flush();
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+}
@@ -0,0 +1,143 @@
+package engine.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads delimited records one at a time. A field in double quotes may hold the delimiter, line breaks and doubled
+// quotes. Records end with \n, \r\n or \r, and a byte order mark at the start of the file is skipped.
+public class CSVReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private int line;
+    // Set once the reader ran out, so the buffer isn't read again.
+    private boolean endOfFile;
+
+    private CSVReader(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.buffer = new char[BUFFER_SIZE];
+        this.line = 1;
+    }
+
+    public static CSVReader create(Reader reader, char delimiter) throws IOException {
+
+        CSVReader csvReader = new CSVReader(reader, delimiter);
+
+        if (csvReader.peek() == '\uFEFF') {
+            csvReader.position++;
+        }
+
+        return csvReader;
+    }
+
+    // Returns the fields of the next record, or null at the end of the file. An empty line is a record with a
+    // single empty field.
+    public List<String> readRecord() throws IOException {
+
+        if (peek() < 0) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+
+        while (true) {
+            int c = next();
+
+            if (c == '"' && field.isEmpty()) {
+                readQuoted(field);
+            }
+            else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else if (c < 0 || c == '\n' || c == '\r') {
+                if (c == '\r' && peek() == '\n') {
+                    position++;
+                }
+
+                if (c >= 0) {
+                    line++;
+                }
+
+                fields.add(field.toString());
+                return fields;
+            }
+            else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // Reads up to the closing quote. Whatever follows the closing quote up to the delimiter is kept as is.
+    private void readQuoted(StringBuilder field) throws IOException {
+
+        int startLine = line;
+
+        while (true) {
+            int c = next();
+
+            if (c < 0) {
+                throw new IOException("The quoted field that starts at line " + startLine + " is never closed");
+            }
+
+            if (c == '"') {
+                if (peek() != '"') {
+                    return;
+                }
+                position++;
+            }
+            else if (c == '\n' || (c == '\r' && peek() != '\n')) {
+                line++;
+            }
+
+            field.append((char) c);
+        }
+    }
+
+    // Stays at the end of the file once it gets there.
+    private int next() throws IOException {
+
+        int c = peek();
+
+        if (c >= 0) {
+            position++;
+        }
+
+        return c;
+    }
+
+    private int peek() throws IOException {
+
+        if (endOfFile) {
+            return -1;
+        }
+
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+
+            if (limit <= 0) {
+                limit = 0;
+                endOfFile = true;
+                return -1;
+            }
+        }
+
+        return buffer[position];
+    }
+}
@@ -0,0 +1,128 @@
+package engine.csv;
+
+import sheet.api.Sheet;
+import sheet.coordinate.api.Coordinate;
+import sheet.coordinate.impl.CoordinateFactory;
+import sheet.impl.SheetImpl;
+import sheet.layout.api.Layout;
+import sheet.layout.api.LayoutGetters;
+import sheet.layout.impl.LayoutImpl;
+import sheet.layout.size.impl.SizeImpl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+// Reads a CSV or TSV file into a new sheet, a field per cell, from A1 on. Every field is taken as an original value
+// and an empty field leaves its cell empty. The file is read twice: once to count the rows and columns of the
+// layout, which is checked before any cell is read, and once to hand the cells to the sheet in batches, so only
+// a batch of the file is held at a time.
+public class CSVSheetLoader {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final int READER_BUFFER_SIZE = 64 * 1024;
+    private static final int COLUMN_WIDTH_UNITS = 10;
+    private static final int ROWS_HEIGHT_UNITS = 1;
+
+    private CSVSheetLoader() {}
+
+    public static Sheet load(Path path, char delimiter, Predicate<LayoutGetters> isValidLayout) throws IOException {
+
+        int rows = 0;
+        int columns = 0;
+
+        try (CSVReader reader = open(path, delimiter)) {
+            for (List<String> record = reader.readRecord(); record != null; record = reader.readRecord()) {
+                rows++;
+                columns = Math.max(columns, record.size());
+            }
+        }
+
+        Layout layout = LayoutImpl.create(SizeImpl.create(COLUMN_WIDTH_UNITS, ROWS_HEIGHT_UNITS),
+                Math.max(rows, 1), Math.max(columns, 1));
+
+        if (!isValidLayout.test(layout)) {
+            throw new IndexOutOfBoundsException("Layout is invalid");
+        }
+
+        Sheet sheet = SheetImpl.create(nameOf(path), layout);
+
+        try (CSVReader reader = open(path, delimiter)) {
+            sheet.loadCells(new CellBatches(reader));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return sheet;
+    }
+
+    private static CSVReader open(Path path, char delimiter) throws IOException {
+        return CSVReader.create(new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8),
+                READER_BUFFER_SIZE), delimiter);
+    }
+
+    // The file name without its extension.
+    private static String nameOf(Path path) {
+
+        String fileName = path.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+
+        return extension > 0 ? fileName.substring(0, extension) : fileName;
+    }
+
+    // The cells of the file, read a batch at a time as the sheet asks for them.
+    private static class CellBatches implements Iterator<Map<Coordinate, String>> {
+
+        private final CSVReader reader;
+        private List<String> record;
+        private int row;
+
+        private CellBatches(CSVReader reader) throws IOException {
+            this.reader = reader;
+            this.record = reader.readRecord();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return record != null;
+        }
+
+        @Override
+        public Map<Coordinate, String> next() {
+
+            if (record == null) {
+                throw new NoSuchElementException();
+            }
+
+            try {
+                Map<Coordinate, String> batch = new HashMap<>();
+
+                while (record != null && batch.size() < BATCH_SIZE) {
+                    for (int column = 0; column < record.size(); column++) {
+                        if (!record.get(column).isEmpty()) {
+                            batch.put(CoordinateFactory.createCoordinate(row, column), record.get(column));
+                        }
+                    }
+
+                    record = reader.readRecord();
+                    row++;
+                }
+
+                return batch;
+
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
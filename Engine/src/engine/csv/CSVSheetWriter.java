@@ -0,0 +1,68 @@
+package engine.csv;
+
+import expression.api.Data;
+import expression.api.DataType;
+import sheet.api.SheetGetters;
+import sheet.cell.api.CellGetters;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Writes the original or effective values of a sheet to a CSV or TSV file a row at a time, so only the values of a
+// single row are held as strings. Every row of the layout gets a record, without the empty fields at its end.
+public class CSVSheetWriter {
+
+    private static final int WRITER_BUFFER_SIZE = 64 * 1024;
+    // Whole numbers up to this size are written without a fraction.
+    private static final double MAX_WHOLE_NUMBER = 1e15;
+
+    private CSVSheetWriter() {}
+
+    public static void write(SheetGetters sheet, Path path, char delimiter, boolean writeOriginalValues) throws IOException {
+
+        String[] fields = new String[sheet.getLayout().getColumns()];
+        int[] numberOfFields = new int[1];
+
+        try (CSVWriter writer = CSVWriter.create(new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8), WRITER_BUFFER_SIZE), delimiter)) {
+
+            for (int row = 0; row < sheet.getLayout().getRows(); row++) {
+                numberOfFields[0] = 0;
+
+                sheet.forEachCellInRow(row, cell -> {
+                    int column = cell.getCoordinate().getCol();
+                    fields[column] = writeOriginalValues ? cell.getOriginalValue() : effectiveValueOf(cell);
+                    numberOfFields[0] = Math.max(numberOfFields[0], column + 1);
+                });
+
+                writer.writeRecord(fields, numberOfFields[0]);
+                Arrays.fill(fields, 0, numberOfFields[0], null);
+            }
+        }
+    }
+
+    // Numbers are written in full instead of with the two decimals the sheet shows.
+    private static String effectiveValueOf(CellGetters cell) {
+
+        Data effectiveValue = cell.getEffectiveValue();
+
+        if (effectiveValue == null || effectiveValue.getValue() == null) {
+            return null;
+        }
+
+        if (effectiveValue.getType() == DataType.NUMERIC) {
+            double number = (double) effectiveValue.getValue();
+
+            return number == Math.rint(number) && Math.abs(number) < MAX_WHOLE_NUMBER
+                    ? Long.toString((long) number)
+                    : Double.toString(number);
+        }
+
+        return effectiveValue.getValue().toString();
+    }
+}
@@ -0,0 +1,78 @@
+package engine.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+// Writes delimited records. A field is put in double quotes, with its quotes doubled, only if it holds the
+// delimiter, a quote or a line break.
+public class CSVWriter implements Closeable {
+
+    private final Writer writer;
+    private final char delimiter;
+
+    private CSVWriter(Writer writer, char delimiter) {
+        this.writer = writer;
+        this.delimiter = delimiter;
+    }
+
+    public static CSVWriter create(Writer writer, char delimiter) {
+        return new CSVWriter(writer, delimiter);
+    }
+
+    // Writes the first count fields, where null stands for an empty field.
+    public void writeRecord(String[] fields, int count) throws IOException {
+
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                writer.write(delimiter);
+            }
+
+            if (fields[i] != null) {
+                writeField(fields[i]);
+            }
+        }
+
+        writer.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeField(String field) throws IOException {
+
+        if (!needsQuotes(field)) {
+            writer.write(field);
+            return;
+        }
+
+        writer.write('"');
+
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+
+            if (c == '"') {
+                writer.write('"');
+            }
+
+            writer.write(c);
+        }
+
+        writer.write('"');
+    }
+
+    private boolean needsQuotes(String field) {
+
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -1,67 +1,323 @@
 package engine.impl;
 
 import engine.api.Engine;
+import engine.binary.BinaryInput;
+import engine.binary.BinaryOutput;
+import engine.csv.CSVSheetLoader;
+import engine.csv.CSVSheetWriter;
+import engine.jaxb.parser.STLSheetStreamLoader;
+import engine.jaxb.parser.STLSheetStreamWriter;
 import engine.jaxb.parser.STLSheetToSheet;
+import engine.journal.EditJournal;
 import engine.version.manager.api.VersionManager;
 import engine.version.manager.api.VersionManagerGetters;
+import engine.version.manager.impl.RetentionPolicyImpl;
 import engine.version.manager.impl.VersionManagerImpl;
 import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
 import jakarta.xml.bind.Unmarshaller;
+import sheet.api.RecalculationMode;
 import sheet.api.Sheet;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import engine.jaxb.generated.STLSheet;
 import sheet.api.SheetGetters;
 import sheet.cell.api.CellGetters;
+import sheet.coordinate.api.Coordinate;
 import sheet.coordinate.impl.CoordinateFactory;
+import sheet.impl.MappedSheet;
+import sheet.impl.SheetImpl;
+import sheet.layout.api.Layout;
 import sheet.layout.api.LayoutGetters;
+import sheet.layout.impl.LayoutImpl;
+import sheet.layout.size.impl.SizeImpl;
 
 public class EngineImpl implements Engine, Serializable {
 
     private final static String JAXB_XML_GENERATED_PACKAGE_NAME = "engine.jaxb.generated";
-    private final static int MAX_ROWS = 50;
-    private final static int MAX_COLUMNS = 20;
+    private final static int MAX_ROWS = 1_048_576;
+    private final static int MAX_COLUMNS = 16_384;
+    private final static int MAX_UNDO_EDITS = 1000;
+    private final static int KEEP_LAST_VERSIONS = 1000;
+    private final static long MAX_VERSION_BYTES = 256L * 1024 * 1024;
+    private final static int BINARY_FILE_MAGIC = 0x53544C42;
+    private final static int BINARY_FORMAT_VERSION = 1;
+    private final static String JOURNAL_SUFFIX = ".journal";
+    private final static long JOURNAL_SYNC_MILLIS = 10;
+    private final static int XML_BUFFER_SIZE = 64 * 1024;
+
+    private static JAXBContext jaxbContext;
 
     private Sheet sheet;
-    private final VersionManager versionManager;
+    // An opened sheet file that wasn't changed yet, while sheet is null.
+    private transient MappedSheet mappedSheet;
+    private VersionManager versionManager;
+    // The original values that undo each edit and redo each undone one, the latest on top.
+    private Deque<Map<Coordinate, String>> undoEdits;
+    private Deque<Map<Coordinate, String>> redoEdits;
+    // The edits made since the sheet was last written to the binary file of the journal.
+    private transient EditJournal journal;
+    // Every sheet the engine loads recalculates in it.
+    private transient ForkJoinPool recalculationPool;
 
+    // The versions before the last KEEP_LAST_VERSIONS are dropped from the oldest on while the history takes more
+    // than MAX_VERSION_BYTES.
     private EngineImpl() {
         this.versionManager = VersionManagerImpl.create();
+        this.versionManager.setRetentionPolicy(RetentionPolicyImpl.create(KEEP_LAST_VERSIONS, 1, MAX_VERSION_BYTES));
+        this.undoEdits = new ArrayDeque<>();
+        this.redoEdits = new ArrayDeque<>();
     }
 
     public static EngineImpl create() {
         return new EngineImpl();
     }
 
+    // The file is read as a stream, and its cells go into the sheet in batches as they're read.
     @Override
     public void readXMLInitFile(String filename) {
+        try (InputStream inputStream = openXMLFile(filename)) {
+            setLoadedSheet(STLSheetStreamLoader.load(inputStream, EngineImpl::isValidLayout));
+        } catch (XMLStreamException | IOException e) {
+            throw new RuntimeException("Failed to read XML file", e);
+        }
+    }
+
+    // Unmarshals the whole file before building the sheet from it, the way files were read before the stream loader.
+    @Override
+    public void readXMLInitFileWithJAXB(String filename) {
+        try (InputStream inputStream = openXMLFile(filename)) {
+            STLSheet stlSheet = deserializeFrom(inputStream);
+            setLoadedSheet(STLSheetToSheet.generate(stlSheet, EngineImpl::isValidLayout));
+        } catch (JAXBException | IOException e) {
+            throw new RuntimeException("Failed to read XML file", e);
+        }
+    }
+
+    // Any version can be written, and the file reads back to the same name, layout and original values.
+    @Override
+    public void writeXMLFile(String filename, int version) {
+
+        SheetGetters sheet = sheetOfVersion(version);
+
+        try (OutputStream outputStream = createXMLFile(filename)) {
+            STLSheetStreamWriter.write(sheet, outputStream);
+        } catch (XMLStreamException | IOException e) {
+            throw new RuntimeException("Failed to write XML file", e);
+        }
+    }
+
+    private static InputStream openXMLFile(String filename) throws FileNotFoundException {
+
+        if (!filename.endsWith(".xml")) {
+            throw new FileNotFoundException("File name has to end with '.xml'");
+        }
+
+        return new BufferedInputStream(new FileInputStream(filename));
+    }
+
+    private static OutputStream createXMLFile(String filename) throws FileNotFoundException {
+
+        if (!filename.endsWith(".xml")) {
+            throw new FileNotFoundException("File name has to end with '.xml'");
+        }
+
+        return new BufferedOutputStream(new FileOutputStream(filename), XML_BUFFER_SIZE);
+    }
+
+    private void setLoadedSheet(Sheet sheet) {
+        closeMappedSheet();
+        closeJournal();
+        this.sheet = sheet;
+        this.sheet.setRecalculationPool(recalculationPool);
+        undoEdits.clear();
+        redoEdits.clear();
+        versionManager.clearVersions();
+        versionManager.addVersion(this.sheet);
+    }
+
+    // The binary file holds the name and layout of the sheet, every version as the original values it changed, and
+    // the undo and redo edits. The expressions, effective values and dependencies are built again when it's read.
+    // Writing the binary file of the journal replaces it in one move once it's complete, and only then empties the
+    // journal, so a crash on the way leaves either the old file and the whole journal or the new file.
+    @Override
+    public void writeBinaryFile(String filename) {
+        loadMappedSheet();
+
+        Path path = Path.of(filename);
+
+        if (journal == null || !isJournalFile(path)) {
+            writeBinary(path);
+            return;
+        }
+
+        try {
+            writeBinaryAtomically(path);
+            journal.clear();
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write binary file", e);
+        }
+    }
+
+    // The file is written and forced next to the binary file, and then moved over it. The move is only durable
+    // once the directory is forced too, and before that a crash may bring back the old file.
+    private void writeBinaryAtomically(Path path) throws IOException {
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
         try {
-            if (!filename.endsWith(".xml")) {
-                throw new FileNotFoundException("File name has to end with '.xml'");
+            writeBinary(temporary);
+
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
             }
 
-            InputStream inputStream = new FileInputStream(new File(filename));
-            STLSheet stlSheet = deserializeFrom(inputStream);
-            //versionManager.clearVersions();
-            Sheet sheet = STLSheetToSheet.generate(stlSheet);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private void writeBinary(Path path) {
+        try (BinaryOutput out = BinaryOutput.create(path)) {
+            LayoutGetters layout = sheet.getLayout();
+
+            out.writeInt(BINARY_FILE_MAGIC);
+            out.writeVarInt(BINARY_FORMAT_VERSION);
+            out.writeString(sheet.getName());
+            out.writeVarInt(layout.getRows());
+            out.writeVarInt(layout.getColumns());
+            out.writeVarInt(layout.getSize().getWidth());
+            out.writeVarInt(layout.getSize().getHeight());
+            out.writeByte(sheet.getRecalculationMode().ordinal());
+            versionManager.writeVersions(out);
+            writeEdits(out, undoEdits);
+            writeEdits(out, redoEdits);
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write binary file", e);
+        }
+    }
 
-            if (!isValidLayout(sheet.getLayout())) {
+    // Everything is read into a new sheet and version manager, so a file that fails to read leaves the engine as it was.
+    @Override
+    public void readBinaryFile(String filename) {
+        try (BinaryInput in = BinaryInput.open(Path.of(filename))) {
+            if (in.readInt() != BINARY_FILE_MAGIC) {
+                throw new StreamCorruptedException("Not a sheet binary file");
+            }
+
+            int formatVersion = in.readVarInt();
+
+            if (formatVersion != BINARY_FORMAT_VERSION) {
+                throw new StreamCorruptedException("Unsupported binary file version " + formatVersion);
+            }
+
+            String name = in.readString();
+            int rows = in.readVarInt();
+            int columns = in.readVarInt();
+            int width = in.readVarInt();
+            Layout layout = LayoutImpl.create(SizeImpl.create(width, in.readVarInt()), rows, columns);
+
+            if (!isValidLayout(layout)) {
                 throw new IndexOutOfBoundsException("Layout is invalid");
             }
 
+            int recalculationMode = in.readByte();
+
+            if (recalculationMode >= RecalculationMode.values().length) {
+                throw new StreamCorruptedException("Unknown recalculation mode " + recalculationMode);
+            }
+
+            Sheet sheet = SheetImpl.create(name, layout);
+            sheet.setRecalculationPool(recalculationPool);
+            VersionManager versionManager = VersionManagerImpl.create();
+            Deque<Map<Coordinate, String>> undoEdits;
+            Deque<Map<Coordinate, String>> redoEdits;
+
+            // A replayed edit that fails means the file is corrupted, just like a value that can't be read.
+            try {
+                versionManager.readVersions(in, sheet);
+                sheet.setRecalculationMode(RecalculationMode.values()[recalculationMode]);
+                undoEdits = readEdits(in);
+                redoEdits = readEdits(in);
+            } catch (IOException e) {
+                versionManager.close();
+                throw e;
+            } catch (RuntimeException e) {
+                versionManager.close();
+                throw (IOException) new StreamCorruptedException("The versions don't replay: " + e.getMessage())
+                        .initCause(e);
+            }
+
+            closeMappedSheet();
+            closeJournal();
+            this.versionManager.close();
             this.sheet = sheet;
+            this.versionManager = versionManager;
+            this.undoEdits = undoEdits;
+            this.redoEdits = redoEdits;
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read binary file", e);
+        }
+    }
+
+    // Opening a sheet file reads only its header. The cells are read as they're looked at, and the whole file is
+    // read into a sheet only when it's changed or its versions are needed.
+    @Override
+    public void openSheetFile(String filename) {
+        try {
+            MappedSheet mappedSheet = MappedSheet.open(Path.of(filename));
+
+            if (!isValidLayout(mappedSheet.getLayout())) {
+                mappedSheet.close();
+                throw new IndexOutOfBoundsException("Layout is invalid");
+            }
+
+            closeMappedSheet();
+            closeJournal();
+            this.mappedSheet = mappedSheet;
+            this.sheet = null;
+            undoEdits.clear();
+            redoEdits.clear();
             versionManager.clearVersions();
-            versionManager.addVersion(this.sheet);
 
-        } catch (JAXBException | FileNotFoundException e) {
-            throw new RuntimeException("Failed to read XML file", e);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open sheet file", e);
+        }
+    }
+
+    @Override
+    public void writeSheetFile(String filename) {
+        try {
+            MappedSheet.write(getSheetStatus(), Path.of(filename));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write sheet file", e);
         }
     }
 
     @Override
-    public SheetGetters getSheetStatus() { return this.sheet; }
+    public SheetGetters getSheetStatus() { return this.sheet != null ? this.sheet : this.mappedSheet; }
 
     @Override
     public CellGetters getCellStatus(SheetGetters sheet, String cellName) {
@@ -70,44 +326,355 @@ public class EngineImpl implements Engine, Serializable {
 
     @Override
     public CellGetters getCellStatus(String cellName) {
-        return getCellStatus(this.sheet, cellName);
+        return getCellStatus(getSheetStatus(), cellName);
     }
 
     @Override
     public CellGetters getCellStatus(int row, int col) {
-        return getCellStatus(this.sheet, row, col);
+        return getCellStatus(getSheetStatus(), row, col);
     }
 
     @Override
     public CellGetters getCellStatus(SheetGetters sheet, int row, int col) {
-        return getCellStatus(sheet, CoordinateFactory.createCoordinate(row, col).toString());
+        return sheet.getCell(CoordinateFactory.createCoordinate(row, col));
     }
 
     @Override
     public void updateCellStatus(String cellName, String value) {
+        loadMappedSheet();
+        Coordinate coordinate = CoordinateFactory.toCoordinate(cellName.toUpperCase());
+        Map<Coordinate, String> originalValues = Collections.singletonMap(coordinate, value);
+        editAndClearRedo(originalValues);
+        appendToJournal(EditJournal.Kind.EDIT, originalValues);
+    }
+
+    // Undoing an edit is an edit of its own, so it gets a new version and can be redone.
+    @Override
+    public void undo() {
+
+        if (undoEdits.isEmpty()) {
+            throw new IllegalStateException("There is nothing to undo");
+        }
+
+        Map<Coordinate, String> originalValues = undoEdits.peek();
+        pushEdit(redoEdits, edit(originalValues));
+        undoEdits.pop();
+        appendToJournal(EditJournal.Kind.UNDO, originalValues);
+    }
+
+    @Override
+    public void redo() {
+
+        if (redoEdits.isEmpty()) {
+            throw new IllegalStateException("There is nothing to redo");
+        }
+
+        Map<Coordinate, String> originalValues = redoEdits.peek();
+        pushEdit(undoEdits, edit(originalValues));
+        redoEdits.pop();
+        appendToJournal(EditJournal.Kind.REDO, originalValues);
+    }
+
+    @Override
+    public boolean canUndo() {
+        return !undoEdits.isEmpty();
+    }
+
+    @Override
+    public boolean canRedo() {
+        return !redoEdits.isEmpty();
+    }
+
+    // The mode belongs to the sheet, so it's written to the binary file and the sheet file with it, and a sheet read
+    // from them recalculates in the mode it was written in.
+    @Override
+    public void setRecalculationMode(RecalculationMode recalculationMode) {
+        loadMappedSheet();
+
+        if (this.sheet == null) {
+            throw new IllegalStateException("No sheet is loaded");
+        }
+
+        this.sheet.setRecalculationMode(recalculationMode);
+    }
+
+    @Override
+    public void setRecalculationPool(ForkJoinPool recalculationPool) {
+        this.recalculationPool = recalculationPool;
+
+        if (this.sheet != null) {
+            this.sheet.setRecalculationPool(recalculationPool);
+        }
+    }
+
+    // A .csv file is read with commas and a .tsv file with tabs, into a new sheet whose layout fits the file.
+    @Override
+    public void readCSVFile(String filename) {
+        try {
+            setLoadedSheet(CSVSheetLoader.load(Path.of(filename), delimiterOf(filename), EngineImpl::isValidLayout));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read CSV file", e);
+        }
+    }
+
+    @Override
+    public void writeCSVFile(String filename, int version, boolean writeOriginalValues) {
+
+        SheetGetters sheet = sheetOfVersion(version);
+
+        try {
+            CSVSheetWriter.write(sheet, Path.of(filename), delimiterOf(filename), writeOriginalValues);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write CSV file", e);
+        }
+    }
+
+    // The current sheet as it is, so an opened sheet file isn't read whole for its last version.
+    private SheetGetters sheetOfVersion(int version) {
+
+        SheetGetters sheet = getSheetStatus();
+
+        return sheet.getVersion() == version ? sheet : getVersionsManagerStatus().getVersion(version);
+    }
+
+    private static char delimiterOf(String filename) throws FileNotFoundException {
+
+        if (filename.endsWith(".csv")) {
+            return ',';
+        }
+
+        if (filename.endsWith(".tsv")) {
+            return '\t';
+        }
+
+        throw new FileNotFoundException("File name has to end with '.csv' or '.tsv'");
+    }
+
+    // Writes the sheet to the binary file and from then on records every edit in a journal next to it, which
+    // recoverBinaryFile replays after a crash. The journal is emptied whenever the sheet is written to that binary
+    // file again, and stops when another sheet is loaded.
+    @Override
+    public void startJournal(String filename) {
+        loadMappedSheet();
+        closeJournal();
+
+        Path path = Path.of(filename);
+        EditJournal journal = null;
+
+        // The journal left from before is emptied first, so a crash on the way never leaves it next to the new file.
+        try {
+            journal = EditJournal.open(journalPath(path), JOURNAL_SYNC_MILLIS);
+            journal.clear();
+            writeBinaryAtomically(path);
+            this.journal = journal;
+
+        } catch (IOException | RuntimeException e) {
+            try {
+                if (journal != null) {
+                    journal.close();
+                }
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new RuntimeException("Failed to start journal", e);
+        }
+    }
+
+    // Reads the binary file and replays the edits of its journal that came after it, then keeps journaling there.
+    @Override
+    public void recoverBinaryFile(String filename) {
+        Path path = Path.of(filename);
+        readBinaryFile(filename);
+
+        EditJournal journal = null;
+
+        try {
+            journal = EditJournal.open(journalPath(path), JOURNAL_SYNC_MILLIS);
+            journal.replay(this::replay);
+            this.journal = journal;
+
+        } catch (IOException | RuntimeException e) {
+            try {
+                if (journal != null) {
+                    journal.close();
+                }
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new RuntimeException("Failed to recover binary file", e);
+        }
+    }
+
+    @Override
+    public VersionManagerGetters getVersionsManagerStatus() {
+        loadMappedSheet();
+        return this.versionManager;
+    }
+
+    // The versions the policy doesn't keep are dropped in the background. Undo and redo keep their own edits, so
+    // they still reach back past a dropped version. The policy is written to the binary file with the versions.
+    @Override
+    public void setRetentionPolicy(int keepLast, int thinInterval, long maxBytes) {
+        versionManager.setRetentionPolicy(RetentionPolicyImpl.create(keepLast, thinInterval, maxBytes));
+    }
+
+    @Override
+    public void exit() {
+        closeMappedSheet();
+        closeJournal();
+        versionManager.close();
+    }
+
+    // Reads the whole opened sheet file into a sheet, which becomes the first version.
+    private void loadMappedSheet() {
+
+        if (this.sheet == null && this.mappedSheet != null) {
+            this.sheet = mappedSheet.toSheet();
+            this.sheet.setRecalculationPool(recalculationPool);
+            versionManager.addVersion(this.sheet);
+            closeMappedSheet();
+        }
+    }
+
+    private void closeMappedSheet() {
+
+        if (this.mappedSheet == null) {
+            return;
+        }
+
+        try {
+            this.mappedSheet.close();
+            this.mappedSheet = null;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close sheet file", e);
+        }
+    }
+
+    // Entries the binary file already has are skipped. Any other entry has to make the next version, or the journal
+    // doesn't belong to the binary file.
+    private void replay(EditJournal.Entry entry) {
+
+        if (entry.getVersion() <= sheet.getVersion()) {
+            return;
+        }
+
+        switch (entry.getKind()) {
+            case EDIT -> editAndClearRedo(entry.getOriginalValues());
+            case UNDO -> undo();
+            case REDO -> redo();
+        }
+
+        if (sheet.getVersion() != entry.getVersion()) {
+            throw new IllegalStateException("The journal entry of version " + entry.getVersion()
+                    + " doesn't follow the binary file");
+        }
+    }
+
+    private void editAndClearRedo(Map<Coordinate, String> originalValues) {
+        pushEdit(undoEdits, edit(originalValues));
+        redoEdits.clear();
+    }
+
+    private void appendToJournal(EditJournal.Kind kind, Map<Coordinate, String> originalValues) {
+        if (journal != null) {
+            journal.append(kind, sheet.getVersion(), originalValues);
+        }
+    }
+
+    private void closeJournal() {
+
+        if (this.journal == null) {
+            return;
+        }
+
+        try {
+            this.journal.close();
+            this.journal = null;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close journal", e);
+        }
+    }
+
+    private boolean isJournalFile(Path path) {
+        return journalPath(path).toAbsolutePath().normalize().equals(journal.getPath().toAbsolutePath().normalize());
+    }
+
+    private static Path journalPath(Path path) {
+        return path.resolveSibling(path.getFileName() + JOURNAL_SUFFIX);
+    }
+
+    // Applies the edit as a new version and returns the edit that undoes it. Only the edited cells and the cells
+    // that depend on them are recalculated.
+    private Map<Coordinate, String> edit(Map<Coordinate, String> originalValues) {
         versionManager.increaseVersion(sheet);
-        // this.sheet.setVersion(sheet.getVersion() + 1);
         try {
-            this.sheet.setCell(CoordinateFactory.toCoordinate(cellName.toUpperCase()), value);
+            Map<Coordinate, String> inverse = this.sheet.editCells(originalValues);
             versionManager.addVersion(this.sheet);
+            return inverse;
         } catch (Exception e) {
             versionManager.decreaseVersion(sheet);
             throw e;
         }
     }
 
-    @Override
-    public VersionManagerGetters getVersionsManagerStatus() { return this.versionManager; }
+    private static void pushEdit(Deque<Map<Coordinate, String>> edits, Map<Coordinate, String> edit) {
 
-    @Override
-    public void exit() {}
+        edits.push(edit);
+
+        if (edits.size() > MAX_UNDO_EDITS) {
+            edits.removeLast();
+        }
+    }
+
+    // A null original value stands for a cell the edit removes.
+    private static void writeEdits(BinaryOutput out, Deque<Map<Coordinate, String>> edits) throws IOException {
+
+        out.writeVarInt(edits.size());
+
+        for (Map<Coordinate, String> edit : edits) {
+            out.writeVarInt(edit.size());
+
+            for (Map.Entry<Coordinate, String> originalValue : edit.entrySet()) {
+                out.writeCoordinate(originalValue.getKey());
+                out.writeString(originalValue.getValue());
+            }
+        }
+    }
 
+    private static Deque<Map<Coordinate, String>> readEdits(BinaryInput in) throws IOException {
+
+        Deque<Map<Coordinate, String>> edits = new ArrayDeque<>();
+
+        for (int count = in.readVarInt(); count > 0; count--) {
+            Map<Coordinate, String> edit = new HashMap<>();
+
+            for (int cells = in.readVarInt(); cells > 0; cells--) {
+                Coordinate coordinate = in.readCoordinate();
+                edit.put(coordinate, in.readString());
+            }
+
+            edits.addLast(Collections.unmodifiableMap(edit));
+        }
+
+        return edits;
+    }
+
+    // Creating the context scans the generated classes, so it's done once. The context is thread safe, the
+    // unmarshaller isn't.
     private static STLSheet deserializeFrom(InputStream inputStream) throws JAXBException {
-        JAXBContext jc = JAXBContext.newInstance(JAXB_XML_GENERATED_PACKAGE_NAME);
-        Unmarshaller unmarshaller = jc.createUnmarshaller();
+        Unmarshaller unmarshaller = jaxbContext().createUnmarshaller();
         return (STLSheet) unmarshaller.unmarshal(inputStream);
     }
 
+    private static synchronized JAXBContext jaxbContext() throws JAXBException {
+
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(JAXB_XML_GENERATED_PACKAGE_NAME);
+        }
+
+        return jaxbContext;
+    }
+
     private static boolean isValidLayout(LayoutGetters layout) {
         return !(layout == null || layout.getRows() > MAX_ROWS || layout.getColumns() > MAX_COLUMNS);
     }
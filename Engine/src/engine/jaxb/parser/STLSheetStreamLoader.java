@@ -0,0 +1,174 @@
+package engine.jaxb.parser;
+
+import sheet.api.Sheet;
+import sheet.coordinate.api.Coordinate;
+import sheet.coordinate.impl.CoordinateFactory;
+import sheet.impl.SheetImpl;
+import sheet.layout.api.Layout;
+import sheet.layout.api.LayoutGetters;
+import sheet.layout.impl.LayoutImpl;
+import sheet.layout.size.impl.SizeImpl;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+// Reads an STL sheet file element by element instead of unmarshalling it whole. The layout is read and checked
+// first, and then the cells go into the sheet in batches as they're read, so neither the XML tree nor a map of
+// every original value is ever held.
+public class STLSheetStreamLoader {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private STLSheetStreamLoader() {}
+
+    public static Sheet load(InputStream inputStream, Predicate<LayoutGetters> isValidLayout) throws XMLStreamException {
+
+        XMLStreamReader reader;
+
+        synchronized (INPUT_FACTORY) {
+            reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+        }
+
+        try {
+            nextStartElement(reader, "STL-Sheet");
+            String name = requiredAttribute(reader, "name");
+
+            nextStartElement(reader, "STL-Layout");
+            int rows = intAttribute(reader, "rows");
+            int columns = intAttribute(reader, "columns");
+
+            nextStartElement(reader, "STL-Size");
+            int width = intAttribute(reader, "column-width-units");
+            Layout layout = LayoutImpl.create(SizeImpl.create(width, intAttribute(reader, "rows-height-units")), rows, columns);
+
+            if (!isValidLayout.test(layout)) {
+                throw new IndexOutOfBoundsException("Layout is invalid");
+            }
+
+            nextStartElement(reader, "STL-Cells");
+
+            Sheet sheet = SheetImpl.create(name, layout);
+            sheet.loadCells(new CellBatches(reader));
+
+            return sheet;
+
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        return factory;
+    }
+
+    // Skips to the next start tag, which has to be the expected one.
+    private static void nextStartElement(XMLStreamReader reader, String localName) throws XMLStreamException {
+
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamReader.START_ELEMENT) {
+                if (!reader.getLocalName().equals(localName)) {
+                    throw new XMLStreamException("Expected <" + localName + "> but found <" + reader.getLocalName() + ">",
+                            reader.getLocation());
+                }
+                return;
+            }
+        }
+
+        throw new XMLStreamException("Missing <" + localName + ">");
+    }
+
+    private static String requiredAttribute(XMLStreamReader reader, String localName) throws XMLStreamException {
+
+        String value = reader.getAttributeValue(null, localName);
+
+        if (value == null) {
+            throw new XMLStreamException("<" + reader.getLocalName() + "> has no " + localName + " attribute",
+                    reader.getLocation());
+        }
+
+        return value;
+    }
+
+    private static int intAttribute(XMLStreamReader reader, String localName) throws XMLStreamException {
+        try {
+            return Integer.parseInt(requiredAttribute(reader, localName).trim());
+        } catch (NumberFormatException e) {
+            throw new XMLStreamException("The " + localName + " attribute of <" + reader.getLocalName() + "> isn't a number",
+                    reader.getLocation(), e);
+        }
+    }
+
+    // The cells of STL-Cells, read a batch at a time as the sheet asks for them.
+    private static class CellBatches implements Iterator<Map<Coordinate, String>> {
+
+        private final XMLStreamReader reader;
+        private boolean hasEnded;
+
+        private CellBatches(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !hasEnded;
+        }
+
+        @Override
+        public Map<Coordinate, String> next() {
+
+            if (hasEnded) {
+                throw new NoSuchElementException();
+            }
+
+            try {
+                Map<Coordinate, String> batch = new HashMap<>();
+
+                while (batch.size() < BATCH_SIZE && !hasEnded) {
+                    if (reader.nextTag() == XMLStreamReader.END_ELEMENT) {
+                        hasEnded = true;
+                    }
+                    else {
+                        readCell(batch);
+                    }
+                }
+
+                return batch;
+
+            } catch (XMLStreamException e) {
+                throw new RuntimeException("Failed to read STL-Cells", e);
+            }
+        }
+
+        private void readCell(Map<Coordinate, String> batch) throws XMLStreamException {
+
+            if (!reader.getLocalName().equals("STL-Cell")) {
+                throw new XMLStreamException("Expected <STL-Cell> but found <" + reader.getLocalName() + ">",
+                        reader.getLocation());
+            }
+
+            int row = intAttribute(reader, "row");
+            String column = requiredAttribute(reader, "column");
+            Coordinate coordinate = CoordinateFactory.createCoordinate(row - 1, CoordinateFactory.parseColumnToInt(column) - 1);
+
+            nextStartElement(reader, "STL-Original-Value");
+            batch.put(coordinate, reader.getElementText());
+
+            if (reader.nextTag() != XMLStreamReader.END_ELEMENT) {
+                throw new XMLStreamException("<STL-Cell> has more than an STL-Original-Value", reader.getLocation());
+            }
+        }
+    }
+}
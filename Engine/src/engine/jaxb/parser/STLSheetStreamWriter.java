@@ -0,0 +1,117 @@
+package engine.jaxb.parser;
+
+import sheet.api.SheetGetters;
+import sheet.cell.api.CellGetters;
+import sheet.coordinate.impl.CoordinateFactory;
+import sheet.layout.api.LayoutGetters;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Writes a sheet as an STL sheet file element by element, in the layout of the files it's read from. The cells are
+// written a row at a time and by column within the row, so only the cells of a single row are held. Reading the
+// file back with STLSheetStreamLoader gives the same name, layout and original values.
+public class STLSheetStreamWriter {
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+    private static final String ENCODING = "UTF-8";
+
+    private STLSheetStreamWriter() {}
+
+    public static void write(SheetGetters sheet, OutputStream outputStream) throws XMLStreamException {
+
+        XMLStreamWriter writer;
+
+        synchronized (OUTPUT_FACTORY) {
+            writer = OUTPUT_FACTORY.createXMLStreamWriter(outputStream, ENCODING);
+        }
+
+        try {
+            LayoutGetters layout = sheet.getLayout();
+
+            writer.writeStartDocument(ENCODING, "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("STL-Sheet");
+            writer.writeAttribute("name", sheet.getName());
+
+            writer.writeCharacters("\n\t");
+            writer.writeStartElement("STL-Layout");
+            writer.writeAttribute("rows", Integer.toString(layout.getRows()));
+            writer.writeAttribute("columns", Integer.toString(layout.getColumns()));
+            writer.writeCharacters("\n\t\t");
+            writer.writeEmptyElement("STL-Size");
+            writer.writeAttribute("column-width-units", Integer.toString(layout.getSize().getWidth()));
+            writer.writeAttribute("rows-height-units", Integer.toString(layout.getSize().getHeight()));
+            writer.writeCharacters("\n\t");
+            writer.writeEndElement();
+
+            writer.writeCharacters("\n\t");
+            writer.writeStartElement("STL-Cells");
+
+            List<CellGetters> rowCells = new ArrayList<>();
+            Comparator<CellGetters> byColumn = Comparator.comparingInt(cell -> cell.getCoordinate().getCol());
+
+            for (int row = 0; row < layout.getRows(); row++) {
+                sheet.forEachCellInRow(row, rowCells::add);
+                rowCells.sort(byColumn);
+
+                for (CellGetters cell : rowCells) {
+                    writeCell(writer, cell);
+                }
+
+                rowCells.clear();
+            }
+
+            writer.writeCharacters("\n\t");
+            writer.writeEndElement();
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void writeCell(XMLStreamWriter writer, CellGetters cell) throws XMLStreamException {
+
+        writer.writeCharacters("\n\t\t");
+        writer.writeStartElement("STL-Cell");
+        writer.writeAttribute("row", Integer.toString(cell.getCoordinate().getRow() + 1));
+        writer.writeAttribute("column", CoordinateFactory.parseIntToColumn(cell.getCoordinate().getCol() + 1));
+        writer.writeCharacters("\n\t\t\t");
+        writer.writeStartElement("STL-Original-Value");
+        writeText(writer, cell.getOriginalValue());
+        writer.writeEndElement();
+        writer.writeCharacters("\n\t\t");
+        writer.writeEndElement();
+    }
+
+    // A reader turns a carriage return in the text into a line feed, so it's written as a character reference.
+    // The other control characters can't be written to XML 1.0 at all.
+    private static void writeText(XMLStreamWriter writer, String text) throws XMLStreamException {
+
+        int start = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (c == '\r') {
+                writer.writeCharacters(text.substring(start, i));
+                writer.writeEntityRef("#13");
+                start = i + 1;
+            }
+            else if (c < 0x20 && c != '\t' && c != '\n') {
+                throw new XMLStreamException("The value \"" + text + "\" has a character that can't be written to XML");
+            }
+        }
+
+        writer.writeCharacters(text.substring(start));
+    }
+}
@@ -6,19 +6,22 @@ import sheet.coordinate.api.Coordinate;
 import sheet.coordinate.impl.CoordinateFactory;
 import sheet.impl.SheetImpl;
 import sheet.layout.api.Layout;
+import sheet.layout.api.LayoutGetters;
 import sheet.layout.impl.LayoutImpl;
 import sheet.layout.size.api.Size;
 import sheet.layout.size.impl.SizeImpl;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class STLSheetToSheet {
 
     private STLSheetToSheet() {}
 
-    public static Sheet generate(STLSheet stlSheet) {
+    // The layout is checked before any cell is set.
+    public static Sheet generate(STLSheet stlSheet, Predicate<LayoutGetters> isValidLayout) {
 
         STLLayout stlLayout = stlSheet.getSTLLayout();
         STLSize stlSize = stlLayout.getSTLSize();
@@ -33,6 +36,10 @@ public class STLSheetToSheet {
 
         Layout layout = LayoutImpl.create(size, row, column);
 
+        if (!isValidLayout.test(layout)) {
+            throw new IndexOutOfBoundsException("Layout is invalid");
+        }
+
         String name = stlSheet.getName();
 
         Sheet sheet = SheetImpl.create(name, layout);
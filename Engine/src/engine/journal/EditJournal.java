@@ -0,0 +1,324 @@
+package engine.journal;
+
+import sheet.coordinate.api.Coordinate;
+import sheet.coordinate.impl.CoordinateFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// An append only file of the edits committed to a sheet. Each entry is its length, a checksum and then the kind of
+// the edit, the version it made and the original values it set, with -1 for the length of a removed cell's value.
+// Appending only copies the entry into a buffer. A background thread writes the buffer and syncs the file every
+// sync interval, so all the edits made in that time share one sync. With a sync interval of 0 every append is
+// written and synced before it returns.
+// An entry that was cut short or doesn't match its checksum ends the journal, since it's what a crash in the middle
+// of a write leaves behind. Opening the journal cuts it off there.
+public class EditJournal implements Closeable {
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    public enum Kind {
+        EDIT, UNDO, REDO
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long syncIntervalMillis;
+    // Appends go to pending, and a sync swaps it with writing so appends don't wait for the file.
+    private final Object appendLock = new Object();
+    private final Object writeLock = new Object();
+    private ByteBuffer pending;
+    private ByteBuffer writing;
+    private long size;
+    private IOException failure;
+    private ScheduledExecutorService syncer;
+
+    private EditJournal(Path path, FileChannel channel, long syncIntervalMillis, long size) {
+        this.path = path;
+        this.channel = channel;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.size = size;
+        this.pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.writing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    }
+
+    // Creates the journal if it doesn't exist, and cuts off whatever follows its last complete entry.
+    public static EditJournal open(Path path, long syncIntervalMillis) throws IOException {
+
+        if (syncIntervalMillis < 0) {
+            throw new IllegalArgumentException("Sync interval cannot be negative");
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            long size = readEntries(channel, entry -> {});
+
+            if (size < channel.size()) {
+                channel.truncate(size);
+                channel.force(false);
+            }
+
+            EditJournal journal = new EditJournal(path, channel, syncIntervalMillis, size);
+
+            if (syncIntervalMillis > 0) {
+                journal.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "edit-journal");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                journal.syncer.scheduleWithFixedDelay(journal::syncInBackground, syncIntervalMillis, syncIntervalMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+
+            return journal;
+
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    // Goes over the entries in the order they were appended.
+    public void replay(Consumer<Entry> action) throws IOException {
+        synchronized (writeLock) {
+            readEntries(channel, action);
+        }
+    }
+
+    public void append(Kind kind, int version, Map<Coordinate, String> originalValues) {
+
+        synchronized (appendLock) {
+            if (failure != null) {
+                throw new RuntimeException("Failed to write journal " + path, failure);
+            }
+
+            encode(kind, version, originalValues);
+        }
+
+        if (syncIntervalMillis == 0) {
+            sync();
+        }
+    }
+
+    // Writes and syncs everything appended so far.
+    public void sync() {
+        try {
+            synchronized (writeLock) {
+                synchronized (appendLock) {
+                    ByteBuffer appended = pending;
+                    pending = writing;
+                    writing = appended;
+                }
+
+                writing.flip();
+
+                while (writing.hasRemaining()) {
+                    size += channel.write(writing, size);
+                }
+
+                writing.clear();
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            synchronized (appendLock) {
+                failure = e;
+            }
+            throw new RuntimeException("Failed to write journal " + path, e);
+        }
+    }
+
+    // Drops every entry, for when the sheet they lead to was saved.
+    public void clear() {
+        try {
+            synchronized (writeLock) {
+                synchronized (appendLock) {
+                    pending.clear();
+                }
+
+                channel.truncate(0);
+                channel.force(false);
+                size = 0;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to clear journal " + path, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+
+        try (channel) {
+            sync();
+        }
+    }
+
+    // A failed sync is kept for the next append to report, since nobody waits for the background thread.
+    private void syncInBackground() {
+        try {
+            sync();
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    private void encode(Kind kind, int version, Map<Coordinate, String> originalValues) {
+
+        int start = pending.position();
+        ensureRemaining(HEADER_BYTES + 3 * Integer.BYTES);
+        pending.position(start + HEADER_BYTES);
+        pending.putInt(kind.ordinal());
+        pending.putInt(version);
+        pending.putInt(originalValues.size());
+
+        for (Map.Entry<Coordinate, String> originalValue : originalValues.entrySet()) {
+            byte[] bytes = originalValue.getValue() == null ? null : originalValue.getValue().getBytes(StandardCharsets.UTF_8);
+            ensureRemaining(3 * Integer.BYTES + (bytes == null ? 0 : bytes.length));
+            pending.putInt(originalValue.getKey().getRow());
+            pending.putInt(originalValue.getKey().getCol());
+            pending.putInt(bytes == null ? -1 : bytes.length);
+
+            if (bytes != null) {
+                pending.put(bytes);
+            }
+        }
+
+        int length = pending.position() - start - HEADER_BYTES;
+        CRC32 checksum = new CRC32();
+        checksum.update(pending.slice(start + HEADER_BYTES, length));
+        pending.putInt(start, length);
+        pending.putInt(start + Integer.BYTES, (int) checksum.getValue());
+    }
+
+    private void ensureRemaining(int bytes) {
+
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    // Returns the size of the complete entries at the start of the file.
+    private static long readEntries(FileChannel channel, Consumer<Entry> action) throws IOException {
+
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+        while (size - position >= HEADER_BYTES) {
+            header.clear();
+            readFully(channel, header, position);
+            int length = header.getInt(0);
+
+            if (length < 3 * Integer.BYTES || length > size - position - HEADER_BYTES) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, position + HEADER_BYTES);
+            CRC32 checksum = new CRC32();
+            checksum.update(payload.flip());
+
+            Entry entry = (int) checksum.getValue() == header.getInt(Integer.BYTES) ? decode(payload.rewind()) : null;
+
+            if (entry == null) {
+                break;
+            }
+
+            action.accept(entry);
+            position += HEADER_BYTES + length;
+        }
+
+        return position;
+    }
+
+    private static Entry decode(ByteBuffer payload) {
+        try {
+            int kind = payload.getInt();
+            int version = payload.getInt();
+            int count = payload.getInt();
+
+            if (kind < 0 || kind >= Kind.values().length || count < 0) {
+                return null;
+            }
+
+            Map<Coordinate, String> originalValues = new HashMap<>();
+
+            for (; count > 0; count--) {
+                Coordinate coordinate = CoordinateFactory.createCoordinate(payload.getInt(), payload.getInt());
+                int length = payload.getInt();
+                String originalValue = null;
+
+                if (length >= 0) {
+                    byte[] bytes = new byte[length];
+                    payload.get(bytes);
+                    originalValue = new String(bytes, StandardCharsets.UTF_8);
+                }
+
+                originalValues.put(coordinate, originalValue);
+            }
+
+            return payload.hasRemaining() ? null : new Entry(Kind.values()[kind], version, Collections.unmodifiableMap(originalValues));
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    public static class Entry {
+
+        private final Kind kind;
+        private final int version;
+        private final Map<Coordinate, String> originalValues;
+
+        private Entry(Kind kind, int version, Map<Coordinate, String> originalValues) {
+            this.kind = kind;
+            this.version = version;
+            this.originalValues = originalValues;
+        }
+
+        public Kind getKind() {
+            return this.kind;
+        }
+
+        public int getVersion() {
+            return this.version;
+        }
+
+        public Map<Coordinate, String> getOriginalValues() {
+            return this.originalValues;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package engine.version.manager.api;
+
+import expression.api.Data;
+import sheet.coordinate.api.Coordinate;
+
+public interface CellChange {
+    Coordinate getCoordinate();
+    String getOldOriginalValue();
+    Data getOldEffectiveValue();
+    String getNewOriginalValue();
+    Data getNewEffectiveValue();
+}
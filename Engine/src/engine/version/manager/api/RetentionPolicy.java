@@ -0,0 +1,7 @@
+package engine.version.manager.api;
+
+public interface RetentionPolicy {
+    int getKeepLast();
+    int getThinInterval();
+    long getMaxBytes();
+}
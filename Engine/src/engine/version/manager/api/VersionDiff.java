@@ -0,0 +1,11 @@
+package engine.version.manager.api;
+
+import java.util.List;
+
+public interface VersionDiff {
+    int getFromVersion();
+    int getToVersion();
+    List<CellChange> getChangedCells();
+    List<CellChange> getAddedCells();
+    List<CellChange> getRemovedCells();
+}
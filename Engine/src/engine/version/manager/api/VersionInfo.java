@@ -0,0 +1,9 @@
+package engine.version.manager.api;
+
+public interface VersionInfo {
+    int getVersion();
+    int getNumberOfCellsThatChanged();
+    int getNumberOfSkippedEvaluations();
+    long getTimestamp();
+    long getByteSize();
+}
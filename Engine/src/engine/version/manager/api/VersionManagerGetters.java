@@ -1,10 +1,18 @@
 package engine.version.manager.api;
 
+import engine.binary.BinaryOutput;
 import sheet.api.SheetGetters;
 
+import java.io.IOException;
 import java.util.List;
 
 public interface VersionManagerGetters {
     List<SheetGetters> getVersions();
     SheetGetters getVersion(int version);
+    List<VersionInfo> getVersionInfos();
+    VersionInfo getVersionInfo(int version);
+    long getHeapBudget();
+    RetentionPolicy getRetentionPolicy();
+    VersionDiff diff(int fromVersion, int toVersion);
+    void writeVersions(BinaryOutput out) throws IOException;
 }
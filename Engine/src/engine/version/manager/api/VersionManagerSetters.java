@@ -1,10 +1,17 @@
 package engine.version.manager.api;
 
+import engine.binary.BinaryInput;
 import sheet.api.Sheet;
 
+import java.io.IOException;
+
 public interface VersionManagerSetters {
     void addVersion(Sheet sheet);
     void clearVersions();
     void increaseVersion(Sheet sheet);
     void decreaseVersion(Sheet sheet);
+    void setHeapBudget(long heapBudget);
+    void setRetentionPolicy(RetentionPolicy retentionPolicy);
+    void readVersions(BinaryInput in, Sheet sheet) throws IOException;
+    void close();
 }
@@ -0,0 +1,51 @@
+package engine.version.manager.impl;
+
+import engine.version.manager.api.CellChange;
+import expression.api.Data;
+import sheet.cell.impl.CellSnapshot;
+import sheet.coordinate.api.Coordinate;
+
+import java.io.Serializable;
+
+// A cell in two versions, either snapshot is null if the cell isn't active in that version.
+public class CellChangeImpl implements CellChange, Serializable {
+
+    private final Coordinate coordinate;
+    private final CellSnapshot oldCell;
+    private final CellSnapshot newCell;
+
+    private CellChangeImpl(Coordinate coordinate, CellSnapshot oldCell, CellSnapshot newCell) {
+        this.coordinate = coordinate;
+        this.oldCell = oldCell;
+        this.newCell = newCell;
+    }
+
+    public static CellChangeImpl create(Coordinate coordinate, CellSnapshot oldCell, CellSnapshot newCell) {
+        return new CellChangeImpl(coordinate, oldCell, newCell);
+    }
+
+    @Override
+    public Coordinate getCoordinate() {
+        return this.coordinate;
+    }
+
+    @Override
+    public String getOldOriginalValue() {
+        return oldCell == null ? null : oldCell.getOriginalValue();
+    }
+
+    @Override
+    public Data getOldEffectiveValue() {
+        return oldCell == null ? null : oldCell.getEffectiveValue();
+    }
+
+    @Override
+    public String getNewOriginalValue() {
+        return newCell == null ? null : newCell.getOriginalValue();
+    }
+
+    @Override
+    public Data getNewEffectiveValue() {
+        return newCell == null ? null : newCell.getEffectiveValue();
+    }
+}
@@ -0,0 +1,58 @@
+package engine.version.manager.impl;
+
+import engine.version.manager.api.RetentionPolicy;
+
+import java.io.Serializable;
+
+// The last keepLast versions are always kept. Older versions are thinned out to the ones whose number is a multiple
+// of thinInterval, and then dropped from the oldest on while the history takes more than maxBytes.
+public class RetentionPolicyImpl implements RetentionPolicy, Serializable {
+
+    private static final RetentionPolicyImpl KEEP_ALL = new RetentionPolicyImpl(Integer.MAX_VALUE, 1, Long.MAX_VALUE);
+
+    private final int keepLast;
+    private final int thinInterval;
+    private final long maxBytes;
+
+    private RetentionPolicyImpl(int keepLast, int thinInterval, long maxBytes) {
+
+        if (keepLast < 1) {
+            throw new IllegalArgumentException("At least the last version has to be kept");
+        }
+
+        if (thinInterval < 1) {
+            throw new IllegalArgumentException("Thin interval must be a positive integer");
+        }
+
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Max bytes cannot be negative");
+        }
+
+        this.keepLast = keepLast;
+        this.thinInterval = thinInterval;
+        this.maxBytes = maxBytes;
+    }
+
+    public static RetentionPolicyImpl create(int keepLast, int thinInterval, long maxBytes) {
+        return new RetentionPolicyImpl(keepLast, thinInterval, maxBytes);
+    }
+
+    public static RetentionPolicyImpl keepAll() {
+        return KEEP_ALL;
+    }
+
+    @Override
+    public int getKeepLast() {
+        return this.keepLast;
+    }
+
+    @Override
+    public int getThinInterval() {
+        return this.thinInterval;
+    }
+
+    @Override
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+}
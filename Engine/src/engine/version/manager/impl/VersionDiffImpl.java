@@ -0,0 +1,56 @@
+package engine.version.manager.impl;
+
+import engine.version.manager.api.CellChange;
+import engine.version.manager.api.VersionDiff;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+public class VersionDiffImpl implements VersionDiff, Serializable {
+
+    private final int fromVersion;
+    private final int toVersion;
+    private final List<CellChange> changedCells;
+    private final List<CellChange> addedCells;
+    private final List<CellChange> removedCells;
+
+    private VersionDiffImpl(int fromVersion, int toVersion, List<CellChange> changedCells,
+                            List<CellChange> addedCells, List<CellChange> removedCells) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.changedCells = changedCells;
+        this.addedCells = addedCells;
+        this.removedCells = removedCells;
+    }
+
+    public static VersionDiffImpl create(int fromVersion, int toVersion, List<CellChange> changedCells,
+                                         List<CellChange> addedCells, List<CellChange> removedCells) {
+        return new VersionDiffImpl(fromVersion, toVersion, changedCells, addedCells, removedCells);
+    }
+
+    @Override
+    public int getFromVersion() {
+        return this.fromVersion;
+    }
+
+    @Override
+    public int getToVersion() {
+        return this.toVersion;
+    }
+
+    @Override
+    public List<CellChange> getChangedCells() {
+        return Collections.unmodifiableList(this.changedCells);
+    }
+
+    @Override
+    public List<CellChange> getAddedCells() {
+        return Collections.unmodifiableList(this.addedCells);
+    }
+
+    @Override
+    public List<CellChange> getRemovedCells() {
+        return Collections.unmodifiableList(this.removedCells);
+    }
+}
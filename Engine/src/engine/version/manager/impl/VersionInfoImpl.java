@@ -0,0 +1,51 @@
+package engine.version.manager.impl;
+
+import engine.version.manager.api.VersionInfo;
+
+import java.io.Serializable;
+
+public class VersionInfoImpl implements VersionInfo, Serializable {
+
+    private final int version;
+    private final int numberOfCellsThatChanged;
+    private final int numberOfSkippedEvaluations;
+    private final long timestamp;
+    private final long byteSize;
+
+    private VersionInfoImpl(int version, int numberOfCellsThatChanged, int numberOfSkippedEvaluations, long timestamp, long byteSize) {
+        this.version = version;
+        this.numberOfCellsThatChanged = numberOfCellsThatChanged;
+        this.numberOfSkippedEvaluations = numberOfSkippedEvaluations;
+        this.timestamp = timestamp;
+        this.byteSize = byteSize;
+    }
+
+    public static VersionInfoImpl create(int version, int numberOfCellsThatChanged, int numberOfSkippedEvaluations, long timestamp, long byteSize) {
+        return new VersionInfoImpl(version, numberOfCellsThatChanged, numberOfSkippedEvaluations, timestamp, byteSize);
+    }
+
+    @Override
+    public int getVersion() {
+        return this.version;
+    }
+
+    @Override
+    public int getNumberOfCellsThatChanged() {
+        return this.numberOfCellsThatChanged;
+    }
+
+    @Override
+    public int getNumberOfSkippedEvaluations() {
+        return this.numberOfSkippedEvaluations;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    @Override
+    public long getByteSize() {
+        return this.byteSize;
+    }
+}
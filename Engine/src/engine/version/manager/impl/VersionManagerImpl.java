@@ -1,23 +1,70 @@
 package engine.version.manager.impl;
 
+import engine.binary.BinaryInput;
+import engine.binary.BinaryOutput;
+import engine.version.manager.api.CellChange;
+import engine.version.manager.api.RetentionPolicy;
+import engine.version.manager.api.VersionDiff;
+import engine.version.manager.api.VersionInfo;
 import engine.version.manager.api.VersionManager;
+import sheet.api.RecalculationMode;
 import sheet.api.Sheet;
 import sheet.api.SheetGetters;
-import sheet.impl.SheetImpl;
+import sheet.cell.api.Cell;
+import sheet.cell.impl.CellSnapshot;
+import sheet.coordinate.api.Coordinate;
+import sheet.impl.SheetDelta;
+import sheet.impl.SheetSnapshot;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+// Every version is kept as the delta from the version before it, and every CHECKPOINT_INTERVAL versions also as a
+// full snapshot. A version is rebuilt from the closest snapshot before it, which is either a checkpoint or one of
+// the recently rebuilt versions, by applying the deltas after it.
+// Once the deltas on the heap take more than the heap budget, the oldest ones are moved to the version store on
+// disk, together with the checkpoints they start, and read back from there when a version needs them.
+// The versions the retention policy doesn't keep are dropped by a background compactor, which merges the delta of
+// a dropped version into the version after it. It drops one version at a time, and does the work of a drop outside
+// the lock, so edits only wait for it to swap in the result. It also copies the live records of the store to a new
+// one once most of the store is left over from dropped versions.
 public class VersionManagerImpl implements VersionManager, Serializable {
 
+    private static final int CHECKPOINT_INTERVAL = 32;
+    private static final int CACHE_SIZE = 8;
+    private static final long DEFAULT_HEAP_BUDGET = 64L * 1024 * 1024;
+    private static final long MIN_STORE_GARBAGE = 1024 * 1024;
+
     private int currentVersion = 0;
 
-    private final List<SheetGetters> versions;
+    // The versions that are kept, by increasing version number. The first one is always a checkpoint.
+    private final List<VersionEntry> entries;
+    private VersionStore versionStore;
+    private long heapBudget;
+    // The bytes of the deltas on the heap, which are all the deltas from firstEntryOnHeap on.
+    private long heapBytes;
+    private int firstEntryOnHeap;
+    private int versionsSinceCheckpoint;
+    private RetentionPolicy retentionPolicy;
+    // The bytes of all the deltas, on the heap or in the store.
+    private long totalBytes;
+    // Every version before this index that isn't protected has a number that is a multiple of the thin interval.
+    private int thinnedUpTo;
+    // The recently rebuilt versions by version number, least recently used first.
+    private transient Map<Integer, SheetSnapshot> rebuiltVersions;
+    private transient ExecutorService compactor;
+    private transient boolean compactionScheduled;
+    // Nobody waits for the compactor, so a compaction that failed is reported by the next version that's added, and
+    // nothing is compacted after it until the versions are cleared.
+    private transient RuntimeException compactionFailure;
 
     private VersionManagerImpl() {
-        this.versions = new ArrayList<>();
+        this.entries = new ArrayList<>();
+        this.versionStore = VersionStore.create();
+        this.heapBudget = DEFAULT_HEAP_BUDGET;
+        this.retentionPolicy = RetentionPolicyImpl.keepAll();
     }
 
     public static VersionManagerImpl create() {
@@ -25,19 +72,91 @@ public class VersionManagerImpl implements VersionManager, Serializable {
     }
 
     public List<SheetGetters> getVersions() {
-        return Collections.unmodifiableList(this.versions);
+
+        return new AbstractList<>() {
+
+            @Override
+            public SheetGetters get(int index) {
+                synchronized (VersionManagerImpl.this) {
+                    return snapshotAt(index);
+                }
+            }
+
+            @Override
+            public int size() {
+                synchronized (VersionManagerImpl.this) {
+                    return entries.size();
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized SheetGetters getVersion(int version) {
+        return snapshotAt(indexOf(version));
+    }
+
+    // A copy, since the compactor may drop versions while the caller goes over the list.
+    @Override
+    public synchronized List<VersionInfo> getVersionInfos() {
+
+        List<VersionInfo> versionInfos = new ArrayList<>(entries.size());
+        entries.forEach(entry -> versionInfos.add(entry.info));
+
+        return Collections.unmodifiableList(versionInfos);
     }
 
     @Override
-    public SheetGetters getVersion(int version) {
-        
-        for (SheetGetters sheetGetters : this.versions) {
-            if (sheetGetters.getVersion() == version) {
-                return sheetGetters;
+    public synchronized VersionInfo getVersionInfo(int version) {
+        return entries.get(indexOf(version)).info;
+    }
+
+    // Only the cells that one of the deltas between the two versions touched can differ, so those are the only
+    // cells compared. A cell that was changed and then changed back isn't part of the diff.
+    @Override
+    public synchronized VersionDiff diff(int fromVersion, int toVersion) {
+
+        int fromIndex = indexOf(fromVersion);
+        int toIndex = indexOf(toVersion);
+        Set<Coordinate> touchedCells = new LinkedHashSet<>();
+
+        for (int i = Math.min(fromIndex, toIndex) + 1; i <= Math.max(fromIndex, toIndex); i++) {
+            SheetDelta delta = deltaAt(i);
+            delta.getUpdatedCells().forEach(cell -> touchedCells.add(cell.getCoordinate()));
+            touchedCells.addAll(delta.getRemovedCells());
+        }
+
+        SheetSnapshot from = snapshotAt(fromIndex);
+        SheetSnapshot to = snapshotAt(toIndex);
+        List<CellChange> changedCells = new ArrayList<>();
+        List<CellChange> addedCells = new ArrayList<>();
+        List<CellChange> removedCells = new ArrayList<>();
+
+        for (Coordinate coordinate : touchedCells) {
+            CellSnapshot oldCell = from.getCells().get(coordinate);
+            CellSnapshot newCell = to.getCells().get(coordinate);
+
+            // The cells that were dirty when their version was taken are evaluated first, so the changes hold values.
+            if (oldCell != null) {
+                from.effectiveValueOf(oldCell);
+            }
+            if (newCell != null) {
+                to.effectiveValueOf(newCell);
+            }
+
+            if (oldCell == null && newCell != null) {
+                addedCells.add(CellChangeImpl.create(coordinate, null, newCell));
+            }
+            else if (oldCell != null && newCell == null) {
+                removedCells.add(CellChangeImpl.create(coordinate, oldCell, null));
+            }
+            else if (oldCell != null && (!Objects.equals(oldCell.getOriginalValue(), newCell.getOriginalValue())
+                    || !Objects.equals(oldCell.getEffectiveValue(), newCell.getEffectiveValue()))) {
+                changedCells.add(CellChangeImpl.create(coordinate, oldCell, newCell));
             }
         }
 
-        throw new IllegalArgumentException("Version " + version + " not found");
+        return VersionDiffImpl.create(fromVersion, toVersion, changedCells, addedCells, removedCells);
     }
 
     public int getCurrentVersion() {
@@ -45,12 +164,173 @@ public class VersionManagerImpl implements VersionManager, Serializable {
     }
 
     @Override
-    public void addVersion(Sheet sheet) {
-        this.versions.add(copySheet(sheet));
+    public synchronized long getHeapBudget() {
+        return this.heapBudget;
+    }
+
+    @Override
+    public synchronized void setHeapBudget(long heapBudget) {
+
+        if (heapBudget < 0) {
+            throw new IllegalArgumentException("Heap budget cannot be negative");
+        }
+
+        this.heapBudget = heapBudget;
+        moveToStoreOverBudget();
+    }
+
+    @Override
+    public synchronized RetentionPolicy getRetentionPolicy() {
+        return this.retentionPolicy;
+    }
+
+    @Override
+    public synchronized void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+
+        if (retentionPolicy == null) {
+            throw new IllegalArgumentException("Retention policy cannot be null");
+        }
+
+        this.retentionPolicy = retentionPolicy;
+        this.thinnedUpTo = 0;
+        scheduleCompaction();
+    }
+
+    @Override
+    public synchronized void addVersion(Sheet sheet) {
+
+        reportCompactionFailure();
+
+        SheetSnapshot snapshot = (SheetSnapshot) sheet.takeSnapshot();
+        SheetDelta delta = snapshot.getDelta();
+
+        addVersion(snapshot, VersionInfoImpl.create(delta.getVersion(), delta.getNumberOfCellsThatChanged(),
+                delta.getNumberOfSkippedEvaluations(), System.currentTimeMillis(), delta.estimateByteSize()));
+    }
+
+    // Only the original values and versions of the cells are written. The effective values are computed again
+    // when the versions are read.
+    @Override
+    public synchronized void writeVersions(BinaryOutput out) throws IOException {
+
+        out.writeVarLong(heapBudget);
+        out.writeVarInt(retentionPolicy.getKeepLast());
+        out.writeVarInt(retentionPolicy.getThinInterval());
+        out.writeVarLong(retentionPolicy.getMaxBytes());
+        out.writeVarInt(entries.size());
+
+        for (int i = 0; i < entries.size(); i++) {
+            VersionInfo info = entries.get(i).info;
+            SheetDelta delta = deltaAt(i);
+
+            out.writeVarInt(info.getVersion());
+            out.writeVarInt(info.getNumberOfCellsThatChanged());
+            out.writeVarInt(info.getNumberOfSkippedEvaluations());
+            out.writeVarLong(info.getTimestamp());
+            out.writeByte(delta.getRecalculationMode().ordinal());
+            out.writeVarInt(delta.getUpdatedCells().size());
+
+            for (CellSnapshot cell : delta.getUpdatedCells()) {
+                out.writeCoordinate(cell.getCoordinate());
+                out.writeVarInt(cell.getVersion());
+                out.writeString(cell.getOriginalValue());
+            }
+
+            out.writeVarInt(delta.getRemovedCells().size());
+
+            for (Coordinate coordinate : delta.getRemovedCells()) {
+                out.writeCoordinate(coordinate);
+            }
+        }
+    }
+
+    // Every version is replayed on the sheet, which should start out empty, as an edit of the cells its delta
+    // changed. The sheet is left at the last version.
+    @Override
+    public synchronized void readVersions(BinaryInput in, Sheet sheet) throws IOException {
+
+        clearVersions();
+        setHeapBudget(in.readVarLong());
+        int keepLast = in.readVarInt();
+        int thinInterval = in.readVarInt();
+        // The policy takes effect once all the versions are read, so the compactor doesn't drop them while they are.
+        RetentionPolicy retentionPolicy = RetentionPolicyImpl.create(keepLast, thinInterval, in.readVarLong());
+
+        RecalculationMode[] recalculationModes = RecalculationMode.values();
+
+        for (int count = in.readVarInt(); count > 0; count--) {
+            int version = in.readVarInt();
+            int numberOfCellsThatChanged = in.readVarInt();
+            int numberOfSkippedEvaluations = in.readVarInt();
+            long timestamp = in.readVarLong();
+            int recalculationMode = in.readByte();
+
+            if (recalculationMode >= recalculationModes.length) {
+                throw new StreamCorruptedException("Unknown recalculation mode " + recalculationMode);
+            }
+
+            Map<Coordinate, String> originalValues = new HashMap<>();
+            Map<Coordinate, Integer> cellVersions = new HashMap<>();
+
+            // A cell can be part of a delta without a new original value, when only its effective value or version
+            // changed. Only the cells whose original values changed are edited, the rest just get their versions.
+            for (int cells = in.readVarInt(); cells > 0; cells--) {
+                Coordinate coordinate = in.readCoordinate();
+                cellVersions.put(coordinate, in.readVarInt());
+                String originalValue = in.readString();
+                Cell cell = sheet.getCell(coordinate);
+
+                if (cell == null || !cell.getOriginalValue().equals(originalValue)) {
+                    originalValues.put(coordinate, originalValue);
+                }
+            }
+
+            for (int cells = in.readVarInt(); cells > 0; cells--) {
+                originalValues.put(in.readCoordinate(), null);
+            }
+
+            sheet.setRecalculationMode(recalculationModes[recalculationMode]);
+            sheet.setVersion(version);
+            sheet.editCells(originalValues);
+            sheet.restoreCellVersions(cellVersions);
+
+            SheetSnapshot snapshot = (SheetSnapshot) sheet.takeSnapshot();
+            SheetDelta delta = snapshot.getDelta();
+            delta = SheetDelta.create(version, numberOfCellsThatChanged, numberOfSkippedEvaluations,
+                    delta.getRecalculationMode(), delta.getUpdatedCells(), delta.getRemovedCells());
+
+            addVersion(SheetSnapshot.create(snapshot.getName(), snapshot.getLayout(), snapshot.getCells(), delta),
+                    VersionInfoImpl.create(version, numberOfCellsThatChanged, numberOfSkippedEvaluations, timestamp,
+                            delta.estimateByteSize()));
+        }
+
+        setRetentionPolicy(retentionPolicy);
+    }
+
+    private void addVersion(SheetSnapshot snapshot, VersionInfo info) {
+
+        SheetDelta delta = snapshot.getDelta();
+        VersionEntry entry = new VersionEntry(info, delta);
+
+        if (entries.isEmpty() || versionsSinceCheckpoint == CHECKPOINT_INTERVAL) {
+            entry.checkpoint = snapshot;
+            versionsSinceCheckpoint = 0;
+        }
+
+        entries.add(entry);
+        versionsSinceCheckpoint++;
+        heapBytes += entry.info.getByteSize();
+        totalBytes += entry.info.getByteSize();
+        rebuiltVersions().put(delta.getVersion(), snapshot);
         currentVersion++;
+
+        moveToStoreOverBudget();
+        scheduleCompaction();
     }
 
+    // The version is increased before the sheet is edited, so a failed compaction is reported before the edit too.
     public void increaseVersion(Sheet sheet) {
+        reportCompactionFailure();
         sheet.setVersion(sheet.getVersion() + 1);
     }
 
@@ -59,24 +339,483 @@ public class VersionManagerImpl implements VersionManager, Serializable {
     }
 
     @Override
-    public void clearVersions() {
+    public synchronized void clearVersions() {
         currentVersion = 0;
-        this.versions.clear();
+        this.entries.clear();
+        // A new store, since the compactor may be reading the old one.
+        this.versionStore.close();
+        this.versionStore = VersionStore.create();
+        this.heapBytes = 0;
+        this.totalBytes = 0;
+        this.firstEntryOnHeap = 0;
+        this.versionsSinceCheckpoint = 0;
+        this.thinnedUpTo = 0;
+        this.compactionFailure = null;
+        rebuiltVersions().clear();
+    }
+
+    // Stops the compactor once it's done with its current step, and deletes the store. The manager is left empty.
+    @Override
+    public synchronized void close() {
+
+        if (compactor != null) {
+            compactor.shutdown();
+            compactor = null;
+        }
+
+        compactionScheduled = false;
+        clearVersions();
+    }
+
+    // The latest delta always stays on the heap.
+    private void moveToStoreOverBudget() {
+
+        while (heapBytes > heapBudget && firstEntryOnHeap < entries.size() - 1) {
+            moveToStore(entries.get(firstEntryOnHeap++));
+        }
+    }
+
+    private void moveToStore(VersionEntry entry) {
+        moveToStore(entry, null, null);
+    }
+
+    // The records are the ones of the delta and the checkpoint of the entry if they were already serialized.
+    private void moveToStore(VersionEntry entry, byte[] deltaRecord, byte[] checkpointRecord) {
+
+        if (entry.deltaPosition != null) {
+            versionStore.release(entry.deltaPosition);
+        }
+
+        entry.deltaPosition = deltaRecord != null ? versionStore.appendRecord(deltaRecord) : versionStore.append(entry.delta);
+        entry.delta = null;
+        heapBytes -= entry.info.getByteSize();
+
+        if (entry.checkpoint != null) {
+            entry.checkpointPosition = checkpointRecord != null ? versionStore.appendRecord(checkpointRecord)
+                    : versionStore.append(entry.checkpoint);
+            entry.checkpoint = null;
+        }
+    }
+
+    private void scheduleCompaction() {
+
+        if (compactionFailure != null || compactionScheduled || (nextToDrop() < 0 && !storeRewriteDue())) {
+            return;
+        }
+
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "version-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        compactionScheduled = true;
+        compactor.execute(this::compact);
     }
 
-    private Sheet copySheet(Sheet sheet) {
+    // Only choosing what to do and swapping in the result are done under the lock. Reading the store, merging the
+    // deltas, rebuilding a checkpoint and copying the store are done outside it, so edits don't wait for them.
+    private void compact() {
+
+        VersionStore compactedStore = null;
 
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ObjectOutputStream oos = new ObjectOutputStream(baos);
-            oos.writeObject(sheet);
-            oos.close();
-
-            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
-            return (SheetImpl) ois.readObject();
-        } catch (Exception e) {
-            // deal with the runtime error that was discovered as part of invocation
-            throw new RuntimeException(e);
+            while (true) {
+                Drop drop = null;
+                VersionStore store = null;
+                long[] livePositions = null;
+
+                synchronized (this) {
+                    int index = nextToDrop();
+                    compactedStore = versionStore;
+
+                    if (storeRewriteDue()) {
+                        store = versionStore;
+                        livePositions = livePositions();
+                    }
+                    else if (index >= 0) {
+                        drop = new Drop(index);
+                    }
+                    else {
+                        compactionScheduled = false;
+                        return;
+                    }
+                }
+
+                if (drop != null) {
+                    drop.merge();
+                    drop.swapIn();
+                }
+                else {
+                    rewriteStore(store, livePositions);
+                }
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                compactionScheduled = false;
+
+                // A failure of versions that were cleared meanwhile doesn't concern the new ones.
+                if (versionStore == compactedStore) {
+                    compactionFailure = e;
+                }
+            }
+        }
+    }
+
+    private synchronized void reportCompactionFailure() {
+        if (compactionFailure != null) {
+            throw new RuntimeException("Failed to compact versions", compactionFailure);
+        }
+    }
+
+    // The index of the next version the retention policy doesn't keep, or -1 if it keeps them all. Versions are
+    // thinned out first, and then dropped from the oldest on while the history is over the byte cap.
+    private int nextToDrop() {
+
+        int unprotected = entries.size() - retentionPolicy.getKeepLast();
+
+        for (; thinnedUpTo < unprotected; thinnedUpTo++) {
+            if (entries.get(thinnedUpTo).info.getVersion() % retentionPolicy.getThinInterval() != 0) {
+                return thinnedUpTo;
+            }
+        }
+
+        return unprotected > 0 && totalBytes > retentionPolicy.getMaxBytes() ? 0 : -1;
+    }
+
+    // The store is copied once its garbage is more than its live records and big enough to be worth the copy.
+    private boolean storeRewriteDue() {
+        long garbageSize = versionStore.garbageSize();
+        return garbageSize >= MIN_STORE_GARBAGE && garbageSize > versionStore.size() - garbageSize;
+    }
+
+    private long[] livePositions() {
+
+        long[] positions = new long[2 * entries.size()];
+        int count = 0;
+
+        for (VersionEntry entry : entries) {
+            if (entry.deltaPosition != null) {
+                positions[count++] = entry.deltaPosition;
+            }
+            if (entry.checkpointPosition != null) {
+                positions[count++] = entry.checkpointPosition;
+            }
+        }
+
+        return Arrays.copyOf(positions, count);
+    }
+
+    // The live records are copied to a new store outside the lock. Under it, the records appended since then are
+    // copied too, the entries move over to the new positions and the old store is deleted. A record released while
+    // it was copied is released again in the new store.
+    private void rewriteStore(VersionStore store, long[] livePositions) {
+
+        VersionStore rewritten = VersionStore.create();
+        Map<Long, Long> movedPositions = new HashMap<>();
+
+        try {
+            for (long position : livePositions) {
+                movedPositions.put(position, rewritten.appendRecord(store.readRecord(position)));
+            }
+        } catch (RuntimeException e) {
+            rewritten.close();
+
+            synchronized (this) {
+                // The versions were cleared and the store with them while we copied it.
+                if (versionStore != store) {
+                    return;
+                }
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (versionStore != store) {
+                rewritten.close();
+                return;
+            }
+
+            Set<Long> stillLive = new HashSet<>();
+
+            for (VersionEntry entry : entries) {
+                entry.deltaPosition = moveRecord(entry.deltaPosition, rewritten, movedPositions, stillLive);
+                entry.checkpointPosition = moveRecord(entry.checkpointPosition, rewritten, movedPositions, stillLive);
+            }
+
+            movedPositions.forEach((position, movedPosition) -> {
+                if (!stillLive.contains(position)) {
+                    rewritten.release(movedPosition);
+                }
+            });
+
+            versionStore = rewritten;
+            store.close();
+        }
+    }
+
+    private Long moveRecord(Long position, VersionStore rewritten, Map<Long, Long> movedPositions, Set<Long> stillLive) {
+
+        if (position == null) {
+            return null;
+        }
+
+        stillLive.add(position);
+        Long movedPosition = movedPositions.get(position);
+
+        return movedPosition != null ? movedPosition : rewritten.appendRecord(versionStore.readRecord(position));
+    }
+
+    // Dropping a version: the version after it takes over its changes, and its checkpoint if it had one. The version
+    // after it always exists, since the latest version is always kept.
+    private class Drop {
+
+        private final int index;
+        private final VersionEntry dropped;
+        private final VersionEntry next;
+        private final VersionStore store;
+        private final SheetDelta droppedDelta;
+        private final Long droppedDeltaPosition;
+        private final SheetDelta nextDelta;
+        private final Long nextDeltaPosition;
+        private final boolean takesCheckpoint;
+        private final SheetSnapshot droppedCheckpoint;
+        private final Long droppedCheckpointPosition;
+        private final boolean nextOnHeap;
+        private SheetDelta mergedDelta;
+        private SheetSnapshot checkpoint;
+        private byte[] mergedDeltaRecord;
+        private byte[] checkpointRecord;
+
+        // Called under the lock, so it copies what merge needs out of the entries.
+        private Drop(int index) {
+            this.index = index;
+            this.dropped = entries.get(index);
+            this.next = entries.get(index + 1);
+            this.store = versionStore;
+            this.droppedDelta = dropped.delta;
+            this.droppedDeltaPosition = dropped.deltaPosition;
+            this.nextDelta = next.delta;
+            this.nextDeltaPosition = next.deltaPosition;
+            this.takesCheckpoint = dropped.isCheckpoint() && !next.isCheckpoint();
+            this.droppedCheckpoint = dropped.checkpoint;
+            this.droppedCheckpointPosition = dropped.checkpointPosition;
+            this.nextOnHeap = index + 1 >= firstEntryOnHeap;
+            this.checkpoint = takesCheckpoint ? rebuiltVersions().get(next.info.getVersion()) : null;
+        }
+
+        // Called outside the lock. If the versions are cleared meanwhile, the store may fail to read, and then the
+        // drop is given up.
+        private void merge() {
+
+            try {
+                SheetDelta nextDelta = this.nextDelta != null ? this.nextDelta : (SheetDelta) store.read(nextDeltaPosition);
+                SheetDelta droppedDelta = this.droppedDelta != null ? this.droppedDelta
+                        : (SheetDelta) store.read(droppedDeltaPosition);
+                mergedDelta = nextDelta.after(droppedDelta);
+
+                if (takesCheckpoint && checkpoint == null) {
+                    SheetSnapshot droppedCheckpoint = this.droppedCheckpoint != null ? this.droppedCheckpoint
+                            : (SheetSnapshot) store.read(droppedCheckpointPosition);
+                    checkpoint = droppedCheckpoint.apply(nextDelta);
+                }
+
+                // Everything before the first entry on the heap stays in the store.
+                if (!nextOnHeap) {
+                    mergedDeltaRecord = VersionStore.toRecord(mergedDelta);
+                    checkpointRecord = checkpoint != null ? VersionStore.toRecord(checkpoint) : null;
+                }
+            } catch (RuntimeException e) {
+                synchronized (VersionManagerImpl.this) {
+                    if (isCurrent()) {
+                        throw e;
+                    }
+                }
+                mergedDelta = null;
+            }
+        }
+
+        // Only the compactor removes entries, so the two entries are still at the index unless the versions were
+        // cleared. Anything else, like the entries moving to the store meanwhile, is taken care of here.
+        private void swapIn() {
+
+            synchronized (VersionManagerImpl.this) {
+                if (mergedDelta == null || !isCurrent()) {
+                    return;
+                }
+
+                boolean nextOnHeap = index + 1 >= firstEntryOnHeap;
+
+                if (nextOnHeap) {
+                    heapBytes -= next.info.getByteSize();
+                }
+                if (index >= firstEntryOnHeap) {
+                    heapBytes -= dropped.info.getByteSize();
+                }
+                totalBytes -= dropped.info.getByteSize() + next.info.getByteSize();
+
+                if (dropped.deltaPosition != null) {
+                    versionStore.release(dropped.deltaPosition);
+                }
+                if (dropped.checkpointPosition != null) {
+                    versionStore.release(dropped.checkpointPosition);
+                }
+                if (checkpoint != null) {
+                    next.checkpoint = checkpoint;
+                }
+
+                VersionInfo info = next.info;
+                next.info = VersionInfoImpl.create(info.getVersion(), info.getNumberOfCellsThatChanged(),
+                        info.getNumberOfSkippedEvaluations(), info.getTimestamp(), mergedDelta.estimateByteSize());
+                next.delta = mergedDelta;
+                totalBytes += next.info.getByteSize();
+                heapBytes += next.info.getByteSize();
+
+                if (!nextOnHeap) {
+                    moveToStore(next, mergedDeltaRecord, checkpointRecord);
+                }
+
+                if (index >= entries.size() - versionsSinceCheckpoint) {
+                    versionsSinceCheckpoint--;
+                }
+
+                entries.remove(index);
+                rebuiltVersions().remove(dropped.info.getVersion());
+
+                if (index < firstEntryOnHeap) {
+                    firstEntryOnHeap--;
+                }
+                if (index < thinnedUpTo) {
+                    thinnedUpTo--;
+                }
+            }
+        }
+
+        private boolean isCurrent() {
+            return index + 1 < entries.size() && entries.get(index) == dropped && entries.get(index + 1) == next;
+        }
+    }
+
+    private SheetDelta deltaAt(int index) {
+        VersionEntry entry = entries.get(index);
+        return entry.delta != null ? entry.delta : (SheetDelta) versionStore.read(entry.deltaPosition);
+    }
+
+    private SheetSnapshot checkpointAt(int index) {
+        VersionEntry entry = entries.get(index);
+        return entry.checkpoint != null ? entry.checkpoint : (SheetSnapshot) versionStore.read(entry.checkpointPosition);
+    }
+
+    // The entries are ordered by version number, so a binary search finds the version.
+    private int indexOf(int version) {
+
+        int low = 0;
+        int high = entries.size() - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleVersion = entries.get(middle).info.getVersion();
+
+            if (middleVersion < version) {
+                low = middle + 1;
+            }
+            else if (middleVersion > version) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+
+        throw new IllegalArgumentException("Version " + version + " not found");
+    }
+
+    private SheetSnapshot snapshotAt(int index) {
+
+        int version = entries.get(index).info.getVersion();
+        SheetSnapshot snapshot = rebuiltVersions().get(version);
+
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        int from = index;
+
+        while (!entries.get(from).isCheckpoint()) {
+            from--;
+        }
+
+        // Starting from the latest rebuilt version between the checkpoint and the one we want, if there is one.
+        int fromVersion = entries.get(from).info.getVersion();
+        snapshot = checkpointAt(from);
+
+        for (Map.Entry<Integer, SheetSnapshot> rebuilt : rebuiltVersions().entrySet()) {
+            if (rebuilt.getKey() > fromVersion && rebuilt.getKey() < version) {
+                fromVersion = rebuilt.getKey();
+                snapshot = rebuilt.getValue();
+            }
+        }
+
+        if (fromVersion != entries.get(from).info.getVersion()) {
+            from = indexOf(fromVersion);
+        }
+
+        for (int i = from + 1; i <= index; i++) {
+            snapshot = snapshot.apply(deltaAt(i));
+        }
+
+        rebuiltVersions().put(version, snapshot);
+
+        return snapshot;
+    }
+
+    // The size of the store file and whether the compactor still has work, for the checks of this package.
+    synchronized long getStoreSize() {
+        return versionStore.size();
+    }
+
+    synchronized boolean isCompacting() {
+        return compactionScheduled;
+    }
+
+    private Map<Integer, SheetSnapshot> rebuiltVersions() {
+
+        if (rebuiltVersions == null) {
+            rebuiltVersions = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, SheetSnapshot> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+        }
+
+        return rebuiltVersions;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
+    // A version with its delta and, for a checkpoint, its snapshot. Each is either on the heap or at its position
+    // in the store.
+    private static class VersionEntry implements Serializable {
+
+        private VersionInfo info;
+        private SheetDelta delta;
+        private Long deltaPosition;
+        private SheetSnapshot checkpoint;
+        private Long checkpointPosition;
+
+        private VersionEntry(VersionInfo info, SheetDelta delta) {
+            this.info = info;
+            this.delta = delta;
+        }
+
+        private boolean isCheckpoint() {
+            return checkpoint != null || checkpointPosition != null;
         }
     }
 }
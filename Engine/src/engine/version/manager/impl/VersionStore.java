@@ -0,0 +1,245 @@
+package engine.version.manager.impl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// An append only file of serialized objects, each written as its length followed by its bytes. A record is read
+// through a read only mapping of just its bytes, so the file isn't limited to what a single mapping can hold.
+// The file is created on the first append and deleted when the store is closed or the JVM exits. A record that's
+// no longer needed is released, which only counts its bytes as garbage; the owner copies the live records to a new
+// store once the garbage is worth it. Serializing the store copies the file into the stream.
+public class VersionStore implements Serializable {
+
+    private transient Path path;
+    private transient FileChannel channel;
+    private long size;
+    private long garbageSize;
+
+    private VersionStore() {}
+
+    public static VersionStore create() {
+        return new VersionStore();
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    // The bytes of the released records, which are still in the file.
+    public long garbageSize() {
+        return this.garbageSize;
+    }
+
+    // Returns the position of the record, which is what read expects.
+    public long append(Serializable value) {
+        return appendRecord(toRecord(value));
+    }
+
+    // The record of a value, length included, as append writes it. Serializing is the expensive part of an append,
+    // so it can be done before taking the lock the appends are made under.
+    public static byte[] toRecord(Serializable value) {
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            bytes.write(new byte[Integer.BYTES]);
+
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(value);
+            }
+
+            byte[] record = bytes.toByteArray();
+            ByteBuffer.wrap(record).putInt(0, record.length - Integer.BYTES);
+
+            return record;
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize version", e);
+        }
+    }
+
+    public long appendRecord(byte[] bytes) {
+
+        try {
+            ByteBuffer record = ByteBuffer.wrap(bytes);
+            long position = size;
+            FileChannel channel = channel();
+
+            while (record.hasRemaining()) {
+                channel.write(record, size + record.position());
+            }
+
+            size += record.capacity();
+            return position;
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write version to " + path, e);
+        }
+    }
+
+    // The record at the position, length included, as appendRecord expects it.
+    public byte[] readRecord(long position) {
+
+        try {
+            ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + recordLength(position));
+
+            while (record.hasRemaining()) {
+                if (channel().read(record, position + record.position()) < 0) {
+                    throw new EOFException("The record at " + position + " ends after the end of the file");
+                }
+            }
+
+            return record.array();
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read version from " + path, e);
+        }
+    }
+
+    public void release(long position) {
+
+        try {
+            garbageSize += Integer.BYTES + recordLength(position);
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read version from " + path, e);
+        }
+    }
+
+    public Object read(long position) {
+
+        try {
+            MappedByteBuffer record = channel().map(FileChannel.MapMode.READ_ONLY, position + Integer.BYTES,
+                    recordLength(position));
+
+            try (ObjectInputStream in = new ObjectInputStream(new ByteBufferInputStream(record))) {
+                return in.readObject();
+            }
+
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Failed to read version from " + path, e);
+        }
+    }
+
+    public void clear() {
+
+        try {
+            if (channel != null) {
+                channel.truncate(0);
+            }
+
+            size = 0;
+            garbageSize = 0;
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to clear " + path, e);
+        }
+    }
+
+    // Closes and deletes the file. The store can still be used afterwards, and then starts a new file.
+    public void close() {
+
+        try {
+            if (channel != null) {
+                channel.close();
+                Files.deleteIfExists(path);
+            }
+
+            channel = null;
+            path = null;
+            size = 0;
+            garbageSize = 0;
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close " + path, e);
+        }
+    }
+
+    private int recordLength(long position) throws IOException {
+
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+
+        while (length.hasRemaining()) {
+            if (channel().read(length, position + length.position()) < 0) {
+                throw new EOFException("The record at " + position + " starts after the end of the file");
+            }
+        }
+
+        return length.getInt(0);
+    }
+
+    private FileChannel channel() throws IOException {
+
+        if (channel == null) {
+            path = Files.createTempFile("versions", ".bin");
+            path.toFile().deleteOnExit();
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        return channel;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+
+        out.defaultWriteObject();
+
+        if (size > 0) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+            for (long position = 0; position < size; position += buffer.position()) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), size - position));
+                channel.read(buffer, position);
+                out.write(buffer.array(), 0, buffer.position());
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+
+        byte[] buffer = new byte[64 * 1024];
+
+        for (long position = 0; position < size; ) {
+            int length = in.read(buffer, 0, (int) Math.min(buffer.length, size - position));
+
+            if (length < 0) {
+                throw new EOFException("The version store ended after " + position + " of " + size + " bytes");
+            }
+
+            channel().write(ByteBuffer.wrap(buffer, 0, length), position);
+            position += length;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+
+            return length;
+        }
+    }
+}
@@ -4,8 +4,6 @@ import expression.api.Data;
 import expression.api.DataType;
 import expression.api.Expression;
 
-import java.util.Arrays;
-
 public class Abs extends UnaryExpression {
 
     public Abs(Expression input) {
@@ -25,15 +23,12 @@ public class Abs extends UnaryExpression {
     @Override
     public boolean isValidArgs(Object... args) {
 
-        boolean value = Arrays
-                .stream(args)
-                .map(Expression.class::cast)
-                .allMatch(arg -> arg.getType() == DataType.NUMERIC || arg.getType() == DataType.UNKNOWN);
-
-        if (!value) {
-            //need to throw our own exception.
-            throw new IllegalArgumentException("arguments must be number/numeric function or reference to cell!\n" +
-                    "for example: {ABS,{REF,A3}},{ABS,{PLUS,4,-5}}");
+        for (Object arg : args) {
+            if (!isOfTypeOrUnknown(arg, DataType.NUMERIC)) {
+                //need to throw our own exception.
+                throw new IllegalArgumentException("arguments must be number/numeric function or reference to cell!\n" +
+                        "for example: {ABS,{REF,A3}},{ABS,{PLUS,4,-5}}");
+            }
         }
 
         return true;
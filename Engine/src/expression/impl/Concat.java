@@ -4,8 +4,6 @@ import expression.api.Data;
 import expression.api.DataType;
 import expression.api.Expression;
 
-import java.util.Arrays;
-
 
 public class Concat extends BinaryExpression {
 
@@ -26,15 +24,12 @@ public class Concat extends BinaryExpression {
     }
     @Override
     public boolean isValidArgs(Object... args) {
-        boolean value = Arrays
-                .stream(args)
-                .map(Expression.class::cast)
-                .allMatch(arg -> arg.getType() == DataType.STRING || arg.getType() == DataType.UNKNOWN);
-
-        if (!value) {
-            //need to throw our own exception.
-            throw new IllegalArgumentException("arguments must be string or reference to cell!\n" +
-                    "for example: {CONCAT,hello,{REF,A3}}");
+        for (Object arg : args) {
+            if (!isOfTypeOrUnknown(arg, DataType.STRING)) {
+                //need to throw our own exception.
+                throw new IllegalArgumentException("arguments must be string or reference to cell!\n" +
+                        "for example: {CONCAT,hello,{REF,A3}}");
+            }
         }
 
         return true;
@@ -4,6 +4,7 @@ import expression.api.Data;
 import expression.api.DataType;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 public class DataImpl implements Data, Serializable {
 
@@ -30,6 +31,19 @@ public class DataImpl implements Data, Serializable {
         return value;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DataImpl that = (DataImpl) o;
+        return type == that.type && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, value);
+    }
+
     @Override
     public String toString() {
         if (type == DataType.NUMERIC) {
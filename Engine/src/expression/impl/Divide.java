@@ -4,8 +4,6 @@ import expression.api.Data;
 import expression.api.DataType;
 import expression.api.Expression;
 
-import java.util.Arrays;
-
 public class Divide extends BinaryExpression {
 
 
@@ -36,15 +34,12 @@ public class Divide extends BinaryExpression {
 
     @Override
     public boolean isValidArgs(Object... args) {
-        boolean value = Arrays
-                .stream(args)
-                .map(Expression.class::cast)
-                .allMatch(arg -> arg.getType() == DataType.NUMERIC || arg.getType() == DataType.UNKNOWN);
-
-        if (!value) {
-            //need to throw our own exception.
-            throw new IllegalArgumentException("arguments must be number/numeric function or reference to cell!\n" +
-                    "for example: {DIVIDE,{PLUS,4,5},{REF,A3}}");
+        for (Object arg : args) {
+            if (!isOfTypeOrUnknown(arg, DataType.NUMERIC)) {
+                //need to throw our own exception.
+                throw new IllegalArgumentException("arguments must be number/numeric function or reference to cell!\n" +
+                        "for example: {DIVIDE,{PLUS,4,5},{REF,A3}}");
+            }
         }
 
         return true;
@@ -17,4 +17,11 @@ public abstract class ExpressionImpl implements Expression, Serializable {
     public DataType getType() {
         return type;
     }
+
+    // True if the argument is of the type, or of a type that's only known once it's evaluated. The arguments
+    // are checked in a plain loop, as every cell of a sheet builds its expression through here.
+    protected static boolean isOfTypeOrUnknown(Object arg, DataType type) {
+        DataType argType = ((Expression) arg).getType();
+        return argType == type || argType == DataType.UNKNOWN;
+    }
 }
@@ -4,8 +4,6 @@ import expression.api.Data;
 import expression.api.DataType;
 import expression.api.Expression;
 
-import java.util.Arrays;
-
 public class Minus extends BinaryExpression  {
 
     public Minus(Expression left, Expression right) {
@@ -23,15 +21,12 @@ public class Minus extends BinaryExpression  {
 
     @Override
     public boolean isValidArgs(Object... args) {
-        boolean value = Arrays
-                .stream(args)
-                .map(Expression.class::cast)
-                .allMatch(arg -> arg.getType() == DataType.NUMERIC || arg.getType() == DataType.UNKNOWN);
-
-        if (!value) {
-            //need to throw our own exception.
-            throw new IllegalArgumentException("arguments must be number/numeric function or reference to cell!\n" +
-                    "for example: {MINUS,{PLUS,4,5},{REF,A3}}");
+        for (Object arg : args) {
+            if (!isOfTypeOrUnknown(arg, DataType.NUMERIC)) {
+                //need to throw our own exception.
+                throw new IllegalArgumentException("arguments must be number/numeric function or reference to cell!\n" +
+                        "for example: {MINUS,{PLUS,4,5},{REF,A3}}");
+            }
         }
 
         return true;
@@ -4,8 +4,6 @@ import expression.api.Data;
 import expression.api.DataType;
 import expression.api.Expression;
 
-import java.util.Arrays;
-
 public class Mod extends BinaryExpression {
 
     public Mod(Expression left, Expression right) {
@@ -37,15 +35,12 @@ public class Mod extends BinaryExpression {
     @Override
     public boolean isValidArgs(Object... args) {
 
-        boolean value = Arrays
-                .stream(args)
-                .map(Expression.class::cast)
-                .allMatch(arg -> arg.getType() == DataType.NUMERIC || arg.getType() == DataType.UNKNOWN);
-
-        if (!value) {
-            //need to throw our own exception.
-            throw new IllegalArgumentException("arguments must be number/numeric function or reference to cell!\n" +
-                    "for example: {MOD,{PLUS,4,5},{REF,A3}}");
+        for (Object arg : args) {
+            if (!isOfTypeOrUnknown(arg, DataType.NUMERIC)) {
+                //need to throw our own exception.
+                throw new IllegalArgumentException("arguments must be number/numeric function or reference to cell!\n" +
+                        "for example: {MOD,{PLUS,4,5},{REF,A3}}");
+            }
         }
 
         return true;
@@ -1,8 +1,6 @@
 package expression.impl;
 import expression.api.*;
 
-import java.util.Arrays;
-
 public class Number extends ExpressionImpl {
 
     private double value;
@@ -24,15 +22,7 @@ public class Number extends ExpressionImpl {
 
     @Override
     public boolean isValidArgs(Object... args) {
-        try{
-            Arrays
-                    .stream(args)
-                    .map(double.class::cast);
-        }
-        catch(ClassCastException e) {
-            throw new IllegalArgumentException("arguments must be number in " + this.getClass().getSimpleName());
-        }
-
+        // The constructor only takes a double, so there's nothing to check.
         return true;
     }
 
@@ -2,8 +2,6 @@ package expression.impl;
 
 import expression.api.*;
 
-import java.util.Arrays;
-
 public class Plus extends BinaryExpression {
 
     public Plus(Expression left, Expression right) {
@@ -23,15 +21,12 @@ public class Plus extends BinaryExpression {
 
     @Override
     public boolean isValidArgs(Object... args) {
-        boolean value = Arrays
-                .stream(args)
-                .map(Expression.class::cast)
-                .allMatch(arg -> arg.getType() == DataType.NUMERIC || arg.getType() == DataType.UNKNOWN);
-
-        if (!value) {
-            //need to throw our own exception.
-            throw new IllegalArgumentException("arguments must be number/numeric function or reference to cell!\n" +
-                    "for example: {PLUS,{DIVIDE,4,5},{REF,A3}}");
+        for (Object arg : args) {
+            if (!isOfTypeOrUnknown(arg, DataType.NUMERIC)) {
+                //need to throw our own exception.
+                throw new IllegalArgumentException("arguments must be number/numeric function or reference to cell!\n" +
+                        "for example: {PLUS,{DIVIDE,4,5},{REF,A3}}");
+            }
         }
 
         return true;
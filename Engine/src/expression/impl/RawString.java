@@ -2,8 +2,6 @@ package expression.impl;
 import expression.api.Data;
 import expression.api.DataType;
 
-import java.util.Arrays;
-
 public class RawString extends ExpressionImpl {
 
     private String value;
@@ -22,15 +20,7 @@ public class RawString extends ExpressionImpl {
 
     @Override
     public boolean isValidArgs(Object... args) {
-        try{
-            Arrays
-                    .stream(args)
-                    .map(String.class::cast);
-        }
-        catch(ClassCastException e) {
-            throw new IllegalArgumentException("arguments must be String in " + this.getClass().getSimpleName());
-        }
-
+        // The constructor only takes a String, so there's nothing to check.
         return true;
     }
 }
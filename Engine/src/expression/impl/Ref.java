@@ -7,8 +7,6 @@ import sheet.api.SheetGetters;
 import sheet.coordinate.api.Coordinate;
 import sheet.coordinate.impl.CoordinateFactory;
 
-import java.util.Arrays;
-
 public class Ref extends ExpressionImpl {
 
     private Coordinate cellToReferTo;
@@ -19,6 +17,11 @@ public class Ref extends ExpressionImpl {
         isValidArgs(cellId);
         cellToReferTo = CoordinateFactory.toCoordinate(((String) cellId.evaluate().getValue()).toUpperCase());
     }
+
+    public Coordinate getCellToReferTo() {
+        return cellToReferTo;
+    }
+
     @Override
     public Data evaluate() {
         return sheetView.getCell(cellToReferTo).getEffectiveValue();
@@ -27,15 +30,11 @@ public class Ref extends ExpressionImpl {
     @Override
     public boolean isValidArgs(Object... args) {
 
-        boolean value = Arrays
-                 .stream(args)
-                 .map(Expression.class::cast)
-                 .allMatch(arg-> arg.getClass() == RawString.class);
-
-        if(!value)
-        {
-            throw new IllegalArgumentException("arguments must be cell-id!\n" +
-                    "for example: {REF,A3}");
+        for (Object arg : args) {
+            if (((Expression) arg).getClass() != RawString.class) {
+                throw new IllegalArgumentException("arguments must be cell-id!\n" +
+                        "for example: {REF,A3}");
+            }
         }
 
         return true;
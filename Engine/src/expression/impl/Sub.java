@@ -2,8 +2,6 @@ package expression.impl;
 
 import expression.api.*;
 
-import java.util.Arrays;
-
 public class Sub extends ExpressionImpl {
     private Expression source;
     private Expression left;
@@ -30,15 +28,12 @@ public class Sub extends ExpressionImpl {
     @Override
     public boolean isValidArgs(Object... args) {
 
-        boolean condition1 = Arrays.stream(args)
-                .map(Expression.class::cast)
-                .limit(1)
-                .allMatch(arg -> arg.getType() == DataType.STRING || arg.getType() == DataType.UNKNOWN);
+        boolean condition1 = args.length == 0 || isOfTypeOrUnknown(args[0], DataType.STRING);
+        boolean condition2 = true;
 
-        boolean condition2 = Arrays.stream(args)
-                        .map(Expression.class::cast)
-                        .skip(1)
-                        .allMatch(arg -> arg.getType() == DataType.NUMERIC || arg.getType() == DataType.UNKNOWN);
+        for (int i = 1; i < args.length; i++) {
+            condition2 &= isOfTypeOrUnknown(args[i], DataType.NUMERIC);
+        }
 
         if (!(condition1 && condition2)) {
             //need to throw our own exception.
@@ -0,0 +1,286 @@
+package expression.parser;
+
+import expression.api.Expression;
+import expression.impl.BooleanExpression;
+import expression.impl.NonValueExpression;
+import expression.impl.Number;
+import expression.impl.RawString;
+import expression.impl.Ref;
+import operation.Operation;
+import sheet.coordinate.api.Coordinate;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+// Parses an original value into its expression and the coordinates of the cells it refers to. Every part of the
+// value is kept as a range of indices into the original string, so only the names of the functions and the
+// primitive values are copied out of it. Nested functions are kept on an explicit stack instead of recursion, so
+// the nesting depth is limited only by memory.
+// The braces and commas of a function are found in a single pass over the value, so a function is split into its
+// parts without going over its content again, and parsing takes time linear in the length of the value however
+// deep the functions are nested.
+public class ExpressionParser {
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private ExpressionParser() {}
+
+    public static ParsedExpression parse(String input) {
+
+        Deque<FunctionCall> functionCalls = new ArrayDeque<>();
+        Set<Coordinate> references = null;
+        Braces braces = new Braces(input);
+        Expression expression = toExpressionOrOpenFunction(input, 0, input.length(), braces, functionCalls);
+
+        while (!functionCalls.isEmpty()) {
+            FunctionCall functionCall = functionCalls.peek();
+
+            // The expression we've just finished is the next argument of the innermost open function.
+            if (expression != null) {
+                functionCall.arguments[functionCall.numberOfArguments++] = expression;
+                expression = null;
+            }
+
+            if (functionCall.numberOfArguments < functionCall.arguments.length) {
+                int part = functionCall.numberOfArguments + 1;
+                expression = toExpressionOrOpenFunction(input, functionCall.partBounds[2 * part],
+                        functionCall.partBounds[2 * part + 1], braces, functionCalls);
+            }
+            else {
+                functionCalls.pop();
+                expression = functionCall.operation.create(functionCall.arguments);
+
+                if (expression instanceof Ref ref) {
+                    if (references == null) {
+                        references = new HashSet<>();
+                    }
+                    references.add(ref.getCellToReferTo());
+                }
+            }
+        }
+
+        return ParsedExpression.create(expression,
+                references == null ? Collections.emptySet() : Collections.unmodifiableSet(references));
+    }
+
+    // Returns the expression of input[from, to), or pushes a new function call and returns null if it's a function.
+    private static Expression toExpressionOrOpenFunction(String input, int from, int to, Braces braces,
+                                                         Deque<FunctionCall> functionCalls) {
+
+        if (from == to) {
+            return new NonValueExpression();
+        }
+
+        if (input.charAt(from) == '{' && input.charAt(to - 1) == '}') {
+
+            int[] partBounds = braces.splitFunction(from, to);
+
+            if (partBounds.length == 0) {
+                throw new IllegalArgumentException("Invalid operation: " + "\n"
+                        +"Supported operations: "+ Arrays.toString(Operation.values()));
+            }
+
+            Operation operation = findOperation(input, partBounds[0], partBounds[1]);
+
+            if (operation == null) {
+                String functionName = input.substring(partBounds[0], partBounds[1]).trim().toUpperCase();
+
+                try {
+                    operation = Operation.valueOf(functionName);
+                } catch(IllegalArgumentException e){
+                    throw new IllegalArgumentException("Invalid operation: " + functionName + "\n"
+                    +"Supported operations: "+ Arrays.toString(Operation.values()));
+                }
+            }
+
+            functionCalls.push(new FunctionCall(operation, partBounds));
+            return null;
+
+        } else {
+            //number, string, boolean
+            return primitiveParseToExpression(input.substring(from, to));
+        }
+    }
+
+    // Finds the operation of a plain ASCII function name without copying it, ignoring the case and the surrounding
+    // whitespace. Returns null for any other name, which is then looked up the slow way.
+    private static Operation findOperation(String input, int from, int to) {
+
+        while (from < to && input.charAt(from) <= ' ') {
+            from++;
+        }
+
+        while (to > from && input.charAt(to - 1) <= ' ') {
+            to--;
+        }
+
+        for (int i = from; i < to; i++) {
+            if (input.charAt(i) >= 0x80) {
+                return null;
+            }
+        }
+
+        for (Operation operation : OPERATIONS) {
+            String name = operation.name();
+
+            if (name.length() == to - from && input.regionMatches(true, from, name, 0, name.length())) {
+                return operation;
+            }
+        }
+
+        return null;
+    }
+
+    private static Expression primitiveParseToExpression(String inputToCell) {
+
+        if (isBoolean(inputToCell)) {
+            return new BooleanExpression(Boolean.parseBoolean(inputToCell));
+        }
+
+        if (mayBeNumeric(inputToCell)) {
+            try {
+                return new Number(Double.parseDouble(inputToCell));
+            } catch (NumberFormatException e) {
+                // Not a number after all, so it's a string.
+            }
+        }
+
+        return new RawString(inputToCell);
+    }
+
+    private static boolean isBoolean(String value) {
+        return "true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value);
+    }
+
+    // Double.parseDouble skips the leading whitespace, and a number starts with a digit, a point, a sign, NaN or
+    // Infinity. Anything else is a string, so we don't pay for the exception.
+    private static boolean mayBeNumeric(String value) {
+
+        int index = 0;
+
+        while (index < value.length() && value.charAt(index) <= ' ') {
+            index++;
+        }
+
+        if (index == value.length()) {
+            return false;
+        }
+
+        char c = value.charAt(index);
+
+        return (c >= '0' && c <= '9') || c == '.' || c == '+' || c == '-' || c == 'N' || c == 'I';
+    }
+
+    private static class FunctionCall {
+
+        private final Operation operation;
+        // The bounds of the function name and then of every argument, as returned by Braces.splitFunction.
+        private final int[] partBounds;
+        private final Object[] arguments;
+        private int numberOfArguments;
+
+        private FunctionCall(Operation operation, int[] partBounds) {
+            this.operation = operation;
+            this.partBounds = partBounds;
+            this.arguments = new Object[partBounds.length / 2 - 1];
+        }
+    }
+
+    // The braces of the value matched up the usual way, in a single pass: every '{' gets its closing '}', if there
+    // is one, and the commas right inside it, each linked to the next. A function input[from, to) is then split at
+    // the commas of its opening brace before its closing one. If that opening brace is closed before the end of the
+    // function, the content of the function has a '}' it didn't open, which is an error.
+    // The arrays are indexed by position in the value, and are only made for a value that has a function.
+    private static class Braces {
+
+        private final String input;
+        // By the position of a '{', the position of its '}', or -1 if it's never closed.
+        private int[] closingBrace;
+        // By the position of a '{', its first comma, and by the position of a comma, the next comma of its '{', or
+        // -1 if there are no more.
+        private int[] nextComma;
+
+        private Braces(String input) {
+            this.input = input;
+        }
+
+        private int[] splitFunction(int from, int to) {
+
+            if (closingBrace == null) {
+                match();
+            }
+
+            int closing = closingBrace[from];
+            int contentTo = to - 1;
+
+            if (closing >= 0 && closing < contentTo) {
+                throw new IllegalArgumentException("Invalid expression: " + input + "\n"
+                        + "The braces are not balanced");
+            }
+
+            int[] partBounds = new int[8];
+            int numberOfBounds = 0;
+            int partStart = from + 1;
+
+            for (int comma = nextComma[from]; comma >= 0 && comma < contentTo; comma = nextComma[comma]) {
+                if (numberOfBounds == partBounds.length) {
+                    partBounds = Arrays.copyOf(partBounds, 2 * numberOfBounds);
+                }
+                partBounds[numberOfBounds++] = partStart;
+                partBounds[numberOfBounds++] = comma;
+                partStart = comma + 1;
+            }
+
+            // An empty last part is left out.
+            if (partStart < contentTo) {
+                if (numberOfBounds == partBounds.length) {
+                    partBounds = Arrays.copyOf(partBounds, numberOfBounds + 2);
+                }
+                partBounds[numberOfBounds++] = partStart;
+                partBounds[numberOfBounds++] = contentTo;
+            }
+
+            return Arrays.copyOf(partBounds, numberOfBounds);
+        }
+
+        // A '}' closes the innermost open '{', and a comma belongs to it. A '}' or a comma outside every brace
+        // can't be inside a function, so it's skipped.
+        private void match() {
+
+            closingBrace = new int[input.length()];
+            nextComma = new int[input.length()];
+
+            // The open braces, innermost on top, each with its last comma so far, or itself before its first one.
+            int[] openBraces = new int[16];
+            int[] lastCommas = new int[16];
+            int numberOfOpenBraces = 0;
+
+            for (int i = 0; i < input.length(); i++) {
+                char c = input.charAt(i);
+
+                if (c == '{') {
+                    if (numberOfOpenBraces == openBraces.length) {
+                        openBraces = Arrays.copyOf(openBraces, 2 * numberOfOpenBraces);
+                        lastCommas = Arrays.copyOf(lastCommas, 2 * numberOfOpenBraces);
+                    }
+                    closingBrace[i] = -1;
+                    nextComma[i] = -1;
+                    openBraces[numberOfOpenBraces] = i;
+                    lastCommas[numberOfOpenBraces++] = i;
+                }
+                else if (c == '}' && numberOfOpenBraces > 0) {
+                    closingBrace[openBraces[--numberOfOpenBraces]] = i;
+                }
+                else if (c == ',' && numberOfOpenBraces > 0) {
+                    nextComma[lastCommas[numberOfOpenBraces - 1]] = i;
+                    nextComma[i] = -1;
+                    lastCommas[numberOfOpenBraces - 1] = i;
+                }
+            }
+        }
+    }
+}
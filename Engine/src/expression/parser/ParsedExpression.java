@@ -0,0 +1,30 @@
+package expression.parser;
+
+import expression.api.Expression;
+import sheet.coordinate.api.Coordinate;
+
+import java.util.Set;
+
+// The expression of an original value together with the coordinates of the cells it refers to.
+public class ParsedExpression {
+
+    private final Expression expression;
+    private final Set<Coordinate> references;
+
+    private ParsedExpression(Expression expression, Set<Coordinate> references) {
+        this.expression = expression;
+        this.references = references;
+    }
+
+    public static ParsedExpression create(Expression expression, Set<Coordinate> references) {
+        return new ParsedExpression(expression, references);
+    }
+
+    public Expression getExpression() {
+        return this.expression;
+    }
+
+    public Set<Coordinate> getReferences() {
+        return this.references;
+    }
+}
@@ -4,9 +4,12 @@ import exception.InvalidFunctionArgument;
 import expression.api.Expression;
 import expression.impl.*;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public enum Operation {
 
@@ -85,23 +88,28 @@ public enum Operation {
         this.numberOfArguments = args;
     }
 
+    // The constructor of every expression class, so it's looked up and made accessible only once.
+    private static final Map<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<>();
+
     private static Object createInstance(Class<?> clazz, int numberOfArgs, Object... args) {
 
-        return Arrays.stream(clazz.getDeclaredConstructors())
-                .filter(constructor -> constructor.getParameterCount() == numberOfArgs)
-                .findFirst()
-                .map(constructor -> {
-                    try {
-                        constructor.setAccessible(true);
-                        return constructor.newInstance(args);
-                    } catch (InstantiationException | IllegalAccessException e) {
-                        throw new RuntimeException(e.getMessage());
-                    } catch (InvocationTargetException e) {
-                        throw new RuntimeException(e.getTargetException().getMessage());
-                    }
-                })
-                .get();
+        Constructor<?> constructor = constructors.computeIfAbsent(clazz, key ->
+                Arrays.stream(key.getDeclaredConstructors())
+                        .filter(declaredConstructor -> declaredConstructor.getParameterCount() == numberOfArgs)
+                        .findFirst()
+                        .map(declaredConstructor -> {
+                            declaredConstructor.setAccessible(true);
+                            return declaredConstructor;
+                        })
+                        .get());
 
+        try {
+            return constructor.newInstance(args);
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e.getMessage());
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getTargetException().getMessage());
+        }
     }
 
     public int getNumberOfArguments() {
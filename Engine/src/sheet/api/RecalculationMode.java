@@ -0,0 +1,6 @@
+package sheet.api;
+
+public enum RecalculationMode {
+
+    SEQUENTIAL, PARALLEL, LAZY
+}
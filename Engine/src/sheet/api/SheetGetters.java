@@ -8,6 +8,7 @@ import sheet.coordinate.api.CoordinateGetters;
 import sheet.layout.api.LayoutGetters;
 
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface SheetGetters {
     String getName();
@@ -15,6 +16,13 @@ public interface SheetGetters {
     int getVersion();
     Cell getCell(Coordinate coordinate);
     int getNumberOfCellsThatChanged();
+    int getNumberOfSkippedEvaluations();
     Map<CoordinateGetters, CellGetters> getActiveCells();
+    // The rows and columns up to the last row and the last column that have a cell, 0 without cells.
+    int getUsedRows();
+    int getUsedColumns();
+    void forEachCellInRow(int row, Consumer<? super CellGetters> action);
+    void forEachCellInColumn(int column, Consumer<? super CellGetters> action);
     Data getCellData(String cellId);
+    RecalculationMode getRecalculationMode();
 }
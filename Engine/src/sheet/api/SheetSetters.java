@@ -2,10 +2,21 @@ package sheet.api;
 
 import sheet.coordinate.api.Coordinate;
 
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public interface SheetSetters {
     void setCell(Coordinate coordinate, String value);
     void setCells(Map<Coordinate, String> originalValues);
+    // Fills a new sheet with cells that arrive in batches, checking and calculating them once after the last one.
+    void loadCells(Iterator<? extends Map<Coordinate, String>> batches);
+    // A null original value removes the cell. Returns the original values that undo the edit.
+    Map<Coordinate, String> editCells(Map<Coordinate, String> originalValues);
+    void restoreCellVersions(Map<Coordinate, Integer> cellVersions);
     void setVersion(int version);
+    void setRecalculationMode(RecalculationMode recalculationMode);
+    void setRecalculationPool(ForkJoinPool recalculationPool);
+    void evaluateDirtyCells();
+    SheetGetters takeSnapshot();
 }
@@ -0,0 +1,5 @@
+package sheet.cell.api;
+
+public interface CellEvaluator {
+    void evaluate(Cell dirtyCell);
+}
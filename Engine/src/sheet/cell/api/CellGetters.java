@@ -7,9 +7,13 @@ import java.util.Set;
 
 public interface CellGetters {
     Coordinate getCoordinate();
+    int getId();
     int getVersion();
     String getOriginalValue();
     Data getEffectiveValue();
+    boolean isDirty();
     Set<Cell> getInfluenceFrom();
+    // The coordinates of the cells the original value refers to.
+    Set<Coordinate> getReferences();
     Set<Cell> getInfluenceOn();
 }
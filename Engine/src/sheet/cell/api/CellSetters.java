@@ -4,10 +4,10 @@ import java.util.Set;
 
 public interface CellSetters {
     void computeEffectiveValue();
+    void markDirty(CellEvaluator evaluator);
     void setOriginalValue(String originalValue);
     void setInfluenceOn(Set<Cell> influenceOn);
     void setInfluenceFrom(Set<Cell> influenceFrom);
     void setVersion(int changeInVersion);
-    void addInfluenceOn(Cell influenceOn);
-    void addInfluenceFrom(Cell influenceFrom);
+    void setId(int id);
 }
@@ -2,22 +2,28 @@ package sheet.cell.impl;
 
 import expression.api.Data;
 import expression.api.Expression;
-import expression.parser.OrignalValueUtilis;
+import expression.parser.ExpressionParser;
+import expression.parser.ParsedExpression;
 import sheet.cell.api.Cell;
+import sheet.cell.api.CellEvaluator;
 import sheet.coordinate.api.Coordinate;
 
 import java.io.Serializable;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
 
 public class CellImpl implements Cell, Serializable {
 
     private final Coordinate coordinate;
+    private int id;
     private int version;
     private String originalValue;
     private Expression expression;
+    // Found together with the expression, and found again from the original value after the cell is read back.
+    private transient Set<Coordinate> references;
     private Data effectiveValue;
+    private boolean dirty;
+    private CellEvaluator evaluator;
     private Set<Cell> influenceFrom;
     private Set<Cell> influenceOn;
 
@@ -30,8 +36,10 @@ public class CellImpl implements Cell, Serializable {
         this.coordinate = coordinate;
         setVersion(version);
         setOriginalValue(originalValue);
-        this.influenceFrom = new HashSet<>();
-        this.influenceOn = new HashSet<>();
+        // The sheet gives the cell an id and views over its dependencies once it's inserted.
+        this.id = -1;
+        this.influenceFrom = Collections.emptySet();
+        this.influenceOn = Collections.emptySet();
     }
 
     public static CellImpl create(Coordinate coordinate, int version, String originalValue) {
@@ -43,6 +51,11 @@ public class CellImpl implements Cell, Serializable {
         return this.coordinate;
     }
 
+    @Override
+    public int getId() {
+        return this.id;
+    }
+
     @Override
     public int getVersion() {
         return this.version;
@@ -55,14 +68,35 @@ public class CellImpl implements Cell, Serializable {
 
     @Override
     public Data getEffectiveValue() {
+
+        // A dirty cell is evaluated on demand and keeps its value until it's marked dirty again.
+        if (this.dirty) {
+            this.evaluator.evaluate(this);
+        }
+
         return this.effectiveValue;
     }
 
+    @Override
+    public boolean isDirty() {
+        return this.dirty;
+    }
+
     @Override
     public Set<Cell> getInfluenceFrom() {
         return this.influenceFrom;
     }
 
+    @Override
+    public Set<Coordinate> getReferences() {
+
+        if (this.references == null) {
+            this.references = ExpressionParser.parse(this.originalValue).getReferences();
+        }
+
+        return this.references;
+    }
+
     @Override
     public Set<Cell> getInfluenceOn() {
         return this.influenceOn;
@@ -78,17 +112,12 @@ public class CellImpl implements Cell, Serializable {
         this.influenceFrom = influenceFrom;
     }
 
-    @Override
-    public void addInfluenceOn(Cell effectOn) {
-        influenceOn.add(effectOn);
-    }
-
-    @Override
-    public void addInfluenceFrom(Cell AffectedFrom) { influenceFrom.add(AffectedFrom); }
 
     @Override
     public void setOriginalValue(String originalValue) {
-       expression = OrignalValueUtilis.toExpression(originalValue);
+       ParsedExpression parsedExpression = ExpressionParser.parse(originalValue);
+       expression = parsedExpression.getExpression();
+       references = parsedExpression.getReferences();
        this.originalValue = originalValue;
     }
 
@@ -99,8 +128,24 @@ public class CellImpl implements Cell, Serializable {
     @Override
     public void setVersion(int changeInVersion) { version = changeInVersion; }
 
+    @Override
+    public void setId(int id) { this.id = id; }
+
     @Override
     public void computeEffectiveValue() {
         setEffectiveValue(expression.evaluate());
+        this.dirty = false;
+        this.evaluator = null;
+    }
+
+    @Override
+    public void markDirty(CellEvaluator evaluator) {
+
+        if (evaluator == null) {
+            throw new IllegalArgumentException("Evaluator cannot be null");
+        }
+
+        this.dirty = true;
+        this.evaluator = evaluator;
     }
 }
@@ -0,0 +1,81 @@
+package sheet.cell.impl;
+
+import expression.api.Data;
+import expression.parser.ExpressionParser;
+import sheet.cell.api.CellGetters;
+import sheet.coordinate.api.Coordinate;
+
+import java.io.Serializable;
+import java.util.Set;
+
+// The values of a cell at a single version. Snapshots never change, so versions in which the cell
+// didn't change share the same one. A cell that was dirty when its snapshot was taken has no effective value
+// yet; the sheet snapshot evaluates it on its first read and keeps the value here.
+public class CellSnapshot implements Serializable {
+
+    private final Coordinate coordinate;
+    private final int version;
+    private final String originalValue;
+    private volatile Data effectiveValue;
+    // Parsed from the original value the first time they're asked for, unless the live cell's are taken.
+    private transient volatile Set<Coordinate> references;
+
+    private CellSnapshot(Coordinate coordinate, int version, String originalValue, Data effectiveValue) {
+
+        if (coordinate == null) {
+            throw new IllegalArgumentException("Coordinate cannot be null");
+        }
+
+        this.coordinate = coordinate;
+        this.version = version;
+        this.originalValue = originalValue;
+        this.effectiveValue = effectiveValue;
+    }
+
+    public static CellSnapshot create(Coordinate coordinate, int version, String originalValue, Data effectiveValue) {
+        return new CellSnapshot(coordinate, version, originalValue, effectiveValue);
+    }
+
+    public static CellSnapshot of(CellGetters cell) {
+
+        CellSnapshot snapshot = new CellSnapshot(cell.getCoordinate(), cell.getVersion(), cell.getOriginalValue(),
+                cell.isDirty() ? null : cell.getEffectiveValue());
+        snapshot.references = cell.getReferences();
+
+        return snapshot;
+    }
+
+    public Coordinate getCoordinate() {
+        return this.coordinate;
+    }
+
+    public int getVersion() {
+        return this.version;
+    }
+
+    public String getOriginalValue() {
+        return this.originalValue;
+    }
+
+    public Set<Coordinate> getReferences() {
+
+        if (this.references == null) {
+            this.references = ExpressionParser.parse(this.originalValue).getReferences();
+        }
+
+        return this.references;
+    }
+
+    // Null while the cell isn't evaluated, SheetSnapshot.effectiveValueOf evaluates it.
+    public Data getEffectiveValue() {
+        return this.effectiveValue;
+    }
+
+    public boolean isEvaluated() {
+        return this.effectiveValue != null;
+    }
+
+    public void setEffectiveValue(Data effectiveValue) {
+        this.effectiveValue = effectiveValue;
+    }
+}
@@ -2,23 +2,12 @@ package sheet.coordinate.impl;
 
 import sheet.coordinate.api.Coordinate;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class CoordinateFactory {
 
-    private static final Map<String, Coordinate> coordinateMap = new HashMap<String, Coordinate>();
-
+    // Coordinates are compared by value, so there's no need to cache them. A cache would grow with every
+    // coordinate that was ever looked at, which on a large sheet means every rendered one.
     public static Coordinate createCoordinate(int row, int col) {
-        String key = row + "," + col;
-
-        Coordinate coordinate = coordinateMap.get(key);
-
-        if (coordinate == null) {
-            coordinate = CoordinateImpl.create(row, col);
-            coordinateMap.put(key, coordinate);
-        }
-        return coordinate;
+        return CoordinateImpl.create(row, col);
     }
 
     public static Coordinate toCoordinate(String coordinateName) {
@@ -41,7 +30,20 @@ public class CoordinateFactory {
         }
         coordinateName = coordinateName.toUpperCase();
 
-        return coordinateName.matches("^[A-Z]+[0-9]+$");
+        // Letters and then digits, the same as ^[A-Z]+[0-9]+$ without compiling a pattern for every reference.
+        int index = 0;
+
+        while (index < coordinateName.length() && coordinateName.charAt(index) >= 'A' && coordinateName.charAt(index) <= 'Z') {
+            index++;
+        }
+
+        int firstDigit = index;
+
+        while (index < coordinateName.length() && coordinateName.charAt(index) >= '0' && coordinateName.charAt(index) <= '9') {
+            index++;
+        }
+
+        return firstDigit > 0 && index > firstDigit && index == coordinateName.length();
     }
 
     public static int extractRow(String coordinateName) {
@@ -78,4 +80,17 @@ public class CoordinateFactory {
         return result;
     }
 
+    // The opposite of parseColumnToInt: 1 -> A, 26 -> Z, 27 -> AA, 16384 -> XFD.
+    public static String parseIntToColumn(int column) {
+        StringBuilder result = new StringBuilder();
+
+        while (column > 0) {
+            column--;
+            result.append((char) ('A' + column % 26));
+            column /= 26;
+        }
+
+        return result.reverse().toString();
+    }
+
 }
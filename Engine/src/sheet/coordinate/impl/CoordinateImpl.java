@@ -3,7 +3,6 @@ package sheet.coordinate.impl;
 import sheet.coordinate.api.Coordinate;
 
 import java.io.Serializable;
-import java.util.Objects;
 
 public class CoordinateImpl implements Coordinate, Serializable {
 
@@ -48,7 +47,7 @@ public class CoordinateImpl implements Coordinate, Serializable {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, column);
+        return 31 * row + column;
     }
 
     private static boolean isValidRow(int row)
@@ -63,14 +62,14 @@ public class CoordinateImpl implements Coordinate, Serializable {
 
     @Override
     public String toString() {
-        // Convert x to a character, starting with 'A'
-        char column = (char) ('A' + this.column);
+        // Convert x to the column name, A to Z and then AA, AB and so on
+        String column = CoordinateFactory.parseIntToColumn(this.column + 1);
 
         // Convert y to a 1-based index for the row
         int row = this.row + 1;
 
         // Combine column and row into the string representation
-        return "" + column + row;
+        return column + row;
     }
 
 }
@@ -0,0 +1,500 @@
+package sheet.impl;
+
+import sheet.cell.api.Cell;
+import sheet.cell.api.CellGetters;
+import sheet.coordinate.api.Coordinate;
+import sheet.coordinate.api.CoordinateGetters;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Keeps the cells of a sheet in 64x64 blocks that are allocated on the first write to them. A block starts sparse,
+// with the packed offsets of its cells kept sorted next to the cells, and turns dense once it holds enough cells.
+// Cells are found by row and column, so a lookup doesn't hash or allocate anything.
+public class CellStorage implements Iterable<Cell>, Serializable {
+
+    private static final int BLOCK_BITS = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int CELLS_PER_BLOCK = BLOCK_SIZE * BLOCK_SIZE;
+    // A sparse block holding more cells than this takes more memory than a dense one would.
+    private static final int SPARSE_LIMIT = CELLS_PER_BLOCK / 8;
+
+    // blocks[blockRow][blockColumn], both levels grow only as far as the cells that were written.
+    private Block[][] blocks;
+    private int size;
+
+    private CellStorage() {
+        this.blocks = new Block[0][];
+    }
+
+    public static CellStorage create() {
+        return new CellStorage();
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public Cell get(int row, int column) {
+
+        Block block = blockOf(row, column);
+
+        return block == null ? null : block.get(offsetOf(row, column));
+    }
+
+    public Cell get(CoordinateGetters coordinate) {
+        return get(coordinate.getRow(), coordinate.getCol());
+    }
+
+    public boolean contains(int row, int column) {
+        return get(row, column) != null;
+    }
+
+    public boolean contains(CoordinateGetters coordinate) {
+        return get(coordinate) != null;
+    }
+
+    // Stores the cell at its coordinate and returns the cell it replaced, or null.
+    public Cell put(Cell cell) {
+
+        Coordinate coordinate = cell.getCoordinate();
+        int row = coordinate.getRow();
+        int column = coordinate.getCol();
+        int blockRow = row >>> BLOCK_BITS;
+        int blockColumn = column >>> BLOCK_BITS;
+
+        if (blockRow >= blocks.length) {
+            blocks = Arrays.copyOf(blocks, Math.max(blockRow + 1, blocks.length * 2));
+        }
+
+        Block[] blockRowBlocks = blocks[blockRow];
+
+        if (blockRowBlocks == null || blockColumn >= blockRowBlocks.length) {
+            int length = blockRowBlocks == null ? 0 : blockRowBlocks.length;
+            blockRowBlocks = blockRowBlocks == null ? new Block[blockColumn + 1]
+                    : Arrays.copyOf(blockRowBlocks, Math.max(blockColumn + 1, length * 2));
+            blocks[blockRow] = blockRowBlocks;
+        }
+
+        Block block = blockRowBlocks[blockColumn];
+
+        if (block == null) {
+            block = new SparseBlock();
+        }
+        else if (block instanceof SparseBlock sparseBlock && sparseBlock.count == SPARSE_LIMIT) {
+            block = sparseBlock.toDense();
+        }
+        blockRowBlocks[blockColumn] = block;
+
+        Cell replaced = block.put(offsetOf(row, column), cell);
+
+        if (replaced == null) {
+            size++;
+        }
+
+        return replaced;
+    }
+
+    // Removes the cell at the coordinate and returns it, or null if there was none. Empty blocks are released.
+    public Cell remove(int row, int column) {
+
+        Block block = blockOf(row, column);
+
+        if (block == null) {
+            return null;
+        }
+
+        Cell removed = block.remove(offsetOf(row, column));
+
+        if (removed != null) {
+            size--;
+
+            if (block.count() == 0) {
+                blocks[row >>> BLOCK_BITS][column >>> BLOCK_BITS] = null;
+            }
+        }
+
+        return removed;
+    }
+
+    public Cell remove(CoordinateGetters coordinate) {
+        return remove(coordinate.getRow(), coordinate.getCol());
+    }
+
+    @Override
+    public void forEach(Consumer<? super Cell> action) {
+
+        for (Block[] blockRowBlocks : blocks) {
+            if (blockRowBlocks != null) {
+                for (Block block : blockRowBlocks) {
+                    if (block != null) {
+                        block.forEach(action);
+                    }
+                }
+            }
+        }
+    }
+
+    // Visits the cells of a row by column, looking only at the blocks the row goes through.
+    public void forEachInRow(int row, Consumer<? super Cell> action) {
+
+        int blockRow = row >>> BLOCK_BITS;
+
+        if (blockRow >= blocks.length || blocks[blockRow] == null) {
+            return;
+        }
+
+        int rowInBlock = row & BLOCK_MASK;
+
+        for (Block block : blocks[blockRow]) {
+            if (block != null) {
+                for (int columnInBlock = 0; columnInBlock < BLOCK_SIZE; columnInBlock++) {
+                    accept(block.get(rowInBlock << BLOCK_BITS | columnInBlock), action);
+                }
+            }
+        }
+    }
+
+    // Visits the cells of a column by row, looking only at the blocks the column goes through.
+    public void forEachInColumn(int column, Consumer<? super Cell> action) {
+
+        int blockColumn = column >>> BLOCK_BITS;
+        int columnInBlock = column & BLOCK_MASK;
+
+        for (Block[] blockRowBlocks : blocks) {
+            if (blockRowBlocks != null && blockColumn < blockRowBlocks.length && blockRowBlocks[blockColumn] != null) {
+                Block block = blockRowBlocks[blockColumn];
+
+                for (int rowInBlock = 0; rowInBlock < BLOCK_SIZE; rowInBlock++) {
+                    accept(block.get(rowInBlock << BLOCK_BITS | columnInBlock), action);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Cell> iterator() {
+        return new CellIterator();
+    }
+
+    // A read only map view keyed by coordinate, lookups go straight to the blocks.
+    public Map<CoordinateGetters, CellGetters> asMap() {
+        return new MapView();
+    }
+
+    private Block blockOf(int row, int column) {
+
+        int blockRow = row >>> BLOCK_BITS;
+        int blockColumn = column >>> BLOCK_BITS;
+
+        if (blockRow >= blocks.length) {
+            return null;
+        }
+
+        Block[] blockRowBlocks = blocks[blockRow];
+
+        return blockRowBlocks == null || blockColumn >= blockRowBlocks.length ? null : blockRowBlocks[blockColumn];
+    }
+
+    // Row and column inside the block packed into a single int.
+    private static int offsetOf(int row, int column) {
+        return (row & BLOCK_MASK) << BLOCK_BITS | (column & BLOCK_MASK);
+    }
+
+    private static void accept(Cell cell, Consumer<? super Cell> action) {
+        if (cell != null) {
+            action.accept(cell);
+        }
+    }
+
+    private interface Block extends Serializable {
+        int count();
+        Cell get(int offset);
+        Cell put(int offset, Cell cell);
+        Cell remove(int offset);
+        // Slots are visited by index from 0 up to capacity, empty slots hold null.
+        int capacity();
+        Cell cellAt(int index);
+        void forEach(Consumer<? super Cell> action);
+    }
+
+    private static class DenseBlock implements Block {
+
+        private final Cell[] cells = new Cell[CELLS_PER_BLOCK];
+        private int count;
+
+        @Override
+        public int count() {
+            return this.count;
+        }
+
+        @Override
+        public Cell get(int offset) {
+            return cells[offset];
+        }
+
+        @Override
+        public Cell put(int offset, Cell cell) {
+
+            Cell replaced = cells[offset];
+            cells[offset] = cell;
+
+            if (replaced == null) {
+                count++;
+            }
+
+            return replaced;
+        }
+
+        @Override
+        public Cell remove(int offset) {
+
+            Cell removed = cells[offset];
+            cells[offset] = null;
+
+            if (removed != null) {
+                count--;
+            }
+
+            return removed;
+        }
+
+        @Override
+        public int capacity() {
+            return CELLS_PER_BLOCK;
+        }
+
+        @Override
+        public Cell cellAt(int index) {
+            return cells[index];
+        }
+
+        @Override
+        public void forEach(Consumer<? super Cell> action) {
+            for (Cell cell : cells) {
+                accept(cell, action);
+            }
+        }
+    }
+
+    // Offsets are kept sorted, so a lookup is a binary search over at most SPARSE_LIMIT shorts.
+    private static class SparseBlock implements Block {
+
+        private short[] offsets = new short[4];
+        private Cell[] cells = new Cell[4];
+        private int count;
+
+        @Override
+        public int count() {
+            return this.count;
+        }
+
+        @Override
+        public Cell get(int offset) {
+
+            int index = indexOf(offset);
+
+            return index >= 0 ? cells[index] : null;
+        }
+
+        @Override
+        public Cell put(int offset, Cell cell) {
+
+            int index = indexOf(offset);
+
+            if (index >= 0) {
+                Cell replaced = cells[index];
+                cells[index] = cell;
+                return replaced;
+            }
+
+            index = -(index + 1);
+
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                cells = Arrays.copyOf(cells, count * 2);
+            }
+
+            System.arraycopy(offsets, index, offsets, index + 1, count - index);
+            System.arraycopy(cells, index, cells, index + 1, count - index);
+            offsets[index] = (short) offset;
+            cells[index] = cell;
+            count++;
+
+            return null;
+        }
+
+        @Override
+        public Cell remove(int offset) {
+
+            int index = indexOf(offset);
+
+            if (index < 0) {
+                return null;
+            }
+
+            Cell removed = cells[index];
+            System.arraycopy(offsets, index + 1, offsets, index, count - index - 1);
+            System.arraycopy(cells, index + 1, cells, index, count - index - 1);
+            cells[--count] = null;
+
+            return removed;
+        }
+
+        @Override
+        public int capacity() {
+            return this.count;
+        }
+
+        @Override
+        public Cell cellAt(int index) {
+            return cells[index];
+        }
+
+        @Override
+        public void forEach(Consumer<? super Cell> action) {
+            for (int i = 0; i < count; i++) {
+                action.accept(cells[i]);
+            }
+        }
+
+        private int indexOf(int offset) {
+            return Arrays.binarySearch(offsets, 0, count, (short) offset);
+        }
+
+        private DenseBlock toDense() {
+
+            DenseBlock denseBlock = new DenseBlock();
+
+            for (int i = 0; i < count; i++) {
+                denseBlock.put(offsets[i], cells[i]);
+            }
+
+            return denseBlock;
+        }
+    }
+
+    // Walks the blocks in the same order as forEach without copying the cells.
+    private class CellIterator implements Iterator<Cell> {
+
+        private int blockRow;
+        private int blockColumn = -1;
+        private Block block;
+        private int index;
+        private Cell next;
+
+        private CellIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Cell next() {
+
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            Cell cell = next;
+            advance();
+
+            return cell;
+        }
+
+        private void advance() {
+
+            next = null;
+
+            while (next == null) {
+                while (block != null && index < block.capacity() && next == null) {
+                    next = block.cellAt(index++);
+                }
+
+                if (next != null || !nextBlock()) {
+                    return;
+                }
+            }
+        }
+
+        private boolean nextBlock() {
+
+            index = 0;
+
+            while (blockRow < blocks.length) {
+                Block[] blockRowBlocks = blocks[blockRow];
+
+                while (blockRowBlocks != null && ++blockColumn < blockRowBlocks.length) {
+                    if (blockRowBlocks[blockColumn] != null) {
+                        block = blockRowBlocks[blockColumn];
+                        return true;
+                    }
+                }
+
+                blockRow++;
+                blockColumn = -1;
+            }
+
+            block = null;
+            return false;
+        }
+    }
+
+    private class MapView extends AbstractMap<CoordinateGetters, CellGetters> {
+
+        @Override
+        public int size() {
+            return CellStorage.this.size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof CoordinateGetters coordinate && contains(coordinate);
+        }
+
+        @Override
+        public CellGetters get(Object key) {
+            return key instanceof CoordinateGetters coordinate ? CellStorage.this.get(coordinate) : null;
+        }
+
+        @Override
+        public Set<Entry<CoordinateGetters, CellGetters>> entrySet() {
+            return new AbstractSet<>() {
+
+                @Override
+                public int size() {
+                    return CellStorage.this.size;
+                }
+
+                @Override
+                public Iterator<Entry<CoordinateGetters, CellGetters>> iterator() {
+
+                    Iterator<Cell> cells = CellStorage.this.iterator();
+
+                    return new Iterator<>() {
+
+                        @Override
+                        public boolean hasNext() {
+                            return cells.hasNext();
+                        }
+
+                        @Override
+                        public Entry<CoordinateGetters, CellGetters> next() {
+                            Cell cell = cells.next();
+                            return new SimpleImmutableEntry<>(cell.getCoordinate(), cell);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package sheet.impl;
+
+import sheet.cell.api.Cell;
+
+import java.io.Serializable;
+import java.util.*;
+
+// The dependencies of a sheet, kept apart from the cells. Every active cell gets an int id, and the edges are kept
+// as int ids in two adjacency structures, one for what a cell depends on and one for what depends on it.
+// An id belongs to a coordinate while it's active, so a cell that replaces another one takes over its id
+// and keeps the cells that depend on it. The graph also keeps the topological rank of every id.
+public class DependencyGraph implements Serializable {
+
+    private Cell[] cells;
+    private int[] ranks;
+    private int numberOfIds;
+    private int[] freeIds;
+    private int numberOfFreeIds;
+    private final Adjacency influenceFrom;
+    private final Adjacency influenceOn;
+
+    private DependencyGraph() {
+        this.cells = new Cell[16];
+        this.ranks = new int[16];
+        this.freeIds = new int[16];
+        this.influenceFrom = new Adjacency();
+        this.influenceOn = new Adjacency();
+    }
+
+    public static DependencyGraph create() {
+        return new DependencyGraph();
+    }
+
+    // Gives the cell a free id and views over its dependencies.
+    public void add(Cell cell) {
+
+        int id = numberOfFreeIds > 0 ? freeIds[--numberOfFreeIds] : numberOfIds++;
+
+        if (id == cells.length) {
+            cells = Arrays.copyOf(cells, id * 2);
+            ranks = Arrays.copyOf(ranks, id * 2);
+        }
+
+        influenceFrom.ensureNode(id);
+        influenceOn.ensureNode(id);
+        attach(cell, id);
+    }
+
+    // The new cell takes over the id, rank and dependents of the one it replaces.
+    public void replace(Cell toReplace, Cell replacement) {
+        attach(replacement, toReplace.getId());
+    }
+
+    // Removes the cell with all of its edges and frees its id.
+    public void remove(Cell cell) {
+
+        int id = cell.getId();
+
+        setInfluenceFrom(cell, Collections.emptySet());
+
+        for (int i = 0; i < influenceOn.lengths[id]; i++) {
+            influenceFrom.remove(influenceOn.edges[influenceOn.starts[id] + i], id);
+        }
+        influenceOn.clear(id);
+
+        cells[id] = null;
+
+        if (numberOfFreeIds == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, numberOfFreeIds * 2);
+        }
+        freeIds[numberOfFreeIds++] = id;
+    }
+
+    // Replaces the cells the given cell depends on.
+    public void setInfluenceFrom(Cell cell, Collection<Cell> affectedBy) {
+
+        int id = cell.getId();
+
+        for (int i = 0; i < influenceFrom.lengths[id]; i++) {
+            influenceOn.remove(influenceFrom.edges[influenceFrom.starts[id] + i], id);
+        }
+        influenceFrom.clear(id);
+
+        for (Cell affectedByCell : affectedBy) {
+            influenceFrom.add(id, affectedByCell.getId());
+            influenceOn.add(affectedByCell.getId(), id);
+        }
+    }
+
+    public int rankOf(Cell cell) {
+        return ranks[cell.getId()];
+    }
+
+    public void setRank(Cell cell, int rank) {
+        ranks[cell.getId()] = rank;
+    }
+
+    // Numbers the ranks of the cells again from 0, in the same order, and returns how many cells there are.
+    public int renumberRanks() {
+
+        long[] rankedIds = new long[numberOfIds];
+        int numberOfCells = 0;
+
+        for (int id = 0; id < numberOfIds; id++) {
+            if (cells[id] != null) {
+                rankedIds[numberOfCells++] = (long) ranks[id] << 32 | id;
+            }
+        }
+
+        Arrays.sort(rankedIds, 0, numberOfCells);
+
+        for (int rank = 0; rank < numberOfCells; rank++) {
+            ranks[(int) rankedIds[rank]] = rank;
+        }
+
+        return numberOfCells;
+    }
+
+    public int getNumberOfEdges() {
+        return influenceFrom.numberOfEdges;
+    }
+
+    private void attach(Cell cell, int id) {
+        cells[id] = cell;
+        cell.setId(id);
+        cell.setInfluenceFrom(new Dependencies(influenceFrom, id));
+        cell.setInfluenceOn(new Dependencies(influenceOn, id));
+    }
+
+    // Compressed sparse rows: the edges of every id are a segment of a single int array. A segment that runs out of
+    // room moves to the end of the array and leaves a tombstone behind, and the array is compacted once the
+    // tombstones take up half of it.
+    private static class Adjacency implements Serializable {
+
+        private int[] starts = new int[16];
+        private int[] lengths = new int[16];
+        private int[] capacities = new int[16];
+        private int[] edges = new int[64];
+        private int end;
+        private int tombstones;
+        private int numberOfEdges;
+
+        private void ensureNode(int id) {
+
+            if (id >= starts.length) {
+                int length = Math.max(id + 1, starts.length * 2);
+                starts = Arrays.copyOf(starts, length);
+                lengths = Arrays.copyOf(lengths, length);
+                capacities = Arrays.copyOf(capacities, length);
+            }
+        }
+
+        private void add(int id, int to) {
+
+            if (lengths[id] == capacities[id]) {
+                relocate(id, Math.max(2, capacities[id] * 2));
+            }
+
+            edges[starts[id] + lengths[id]++] = to;
+            numberOfEdges++;
+        }
+
+        // The last edge of the segment takes the place of the removed one.
+        private void remove(int id, int to) {
+
+            int start = starts[id];
+            int last = start + lengths[id] - 1;
+
+            for (int i = start; i <= last; i++) {
+                if (edges[i] == to) {
+                    edges[i] = edges[last];
+                    lengths[id]--;
+                    numberOfEdges--;
+                    return;
+                }
+            }
+        }
+
+        private boolean contains(int id, int to) {
+
+            for (int i = starts[id]; i < starts[id] + lengths[id]; i++) {
+                if (edges[i] == to) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private void clear(int id) {
+            numberOfEdges -= lengths[id];
+            tombstones += capacities[id];
+            starts[id] = 0;
+            lengths[id] = 0;
+            capacities[id] = 0;
+        }
+
+        private void relocate(int id, int capacity) {
+
+            if (end + capacity > edges.length && tombstones > end / 2) {
+                compact();
+            }
+
+            if (end + capacity > edges.length) {
+                edges = Arrays.copyOf(edges, Math.max(end + capacity, edges.length * 2));
+            }
+
+            System.arraycopy(edges, starts[id], edges, end, lengths[id]);
+            tombstones += capacities[id];
+            starts[id] = end;
+            capacities[id] = capacity;
+            end += capacity;
+        }
+
+        // Copies the live segments to the front, in the order they appear in the array.
+        private void compact() {
+
+            Integer[] ids = new Integer[starts.length];
+            int numberOfIds = 0;
+
+            for (int id = 0; id < starts.length; id++) {
+                if (capacities[id] > 0) {
+                    ids[numberOfIds++] = id;
+                }
+            }
+
+            Arrays.sort(ids, 0, numberOfIds, Comparator.comparingInt(id -> starts[id]));
+            end = 0;
+
+            for (int i = 0; i < numberOfIds; i++) {
+                int id = ids[i];
+                System.arraycopy(edges, starts[id], edges, end, lengths[id]);
+                starts[id] = end;
+                end += capacities[id];
+            }
+
+            tombstones = 0;
+        }
+    }
+
+    // A read only view over the edges of a single id.
+    private class Dependencies extends AbstractSet<Cell> implements Serializable {
+
+        private final Adjacency adjacency;
+        private final int id;
+
+        private Dependencies(Adjacency adjacency, int id) {
+            this.adjacency = adjacency;
+            this.id = id;
+        }
+
+        @Override
+        public int size() {
+            return adjacency.lengths[id];
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Cell cell && cell.getId() >= 0 && cell.getId() < cells.length && cells[cell.getId()] == cell
+                    && adjacency.contains(id, cell.getId());
+        }
+
+        @Override
+        public Iterator<Cell> iterator() {
+
+            return new Iterator<>() {
+
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < adjacency.lengths[id];
+                }
+
+                @Override
+                public Cell next() {
+
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return cells[adjacency.edges[adjacency.starts[id] + index++]];
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,666 @@
+package sheet.impl;
+
+import expression.api.Data;
+import expression.api.DataType;
+import expression.impl.DataImpl;
+import expression.impl.Ref;
+import expression.parser.ExpressionParser;
+import expression.parser.OrignalValueUtilis;
+import expression.parser.ParsedExpression;
+import sheet.api.RecalculationMode;
+import sheet.api.Sheet;
+import sheet.api.SheetGetters;
+import sheet.cell.api.Cell;
+import sheet.cell.api.CellEvaluator;
+import sheet.cell.api.CellGetters;
+import sheet.coordinate.api.Coordinate;
+import sheet.coordinate.api.CoordinateGetters;
+import sheet.coordinate.impl.CoordinateFactory;
+import sheet.layout.api.Layout;
+import sheet.layout.api.LayoutGetters;
+import sheet.layout.impl.LayoutImpl;
+import sheet.layout.size.impl.SizeImpl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+// A read only sheet over a file of cells stored in tiles of 64 x 64 cells, the same blocks CellStorage uses.
+// Opening the file reads only its header, and the index of tiles is mapped and searched where it is.
+// A tile is read the first time one of its cells is asked for, and a cell is parsed and evaluated the first time
+// its effective value is asked for, so the memory taken grows with the cells that were looked at.
+//
+// The file is the header, then the tiles, then the index:
+//   header: magic, format version, rows, columns, width, height, version, recalculation mode, number of cells,
+//           number of tiles, index position, name
+//   tile:   number of cells, then for every cell by row and column: row and column in the tile, version,
+//           original value, and the coordinates of the cells that refer to it
+//   index:  for every tile by tile row and column: its key, position and length
+public class MappedSheet implements SheetGetters, Closeable {
+
+    private static final int MAGIC = 0x53544C54;
+    private static final int FORMAT_VERSION = 1;
+    private static final int TILE_BITS = 6;
+    private static final int TILE_MASK = (1 << TILE_BITS) - 1;
+    private static final int HEADER_BYTES = 10 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int INDEX_ENTRY_BYTES = 2 * Long.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    private final String name;
+    private final Layout layout;
+    private final int version;
+    private final RecalculationMode recalculationMode;
+    private final long numberOfCells;
+    private final int numberOfTiles;
+    private final MappedByteBuffer index;
+    private final CellStorage cells;
+    private final Set<Long> loadedTiles;
+
+    private MappedSheet(FileChannel channel) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, 0);
+
+        if (header.getInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a sheet file");
+        }
+
+        int formatVersion = header.getInt();
+
+        if (formatVersion != FORMAT_VERSION) {
+            throw new StreamCorruptedException("Unsupported sheet file version " + formatVersion);
+        }
+
+        int rows = header.getInt();
+        int columns = header.getInt();
+        int width = header.getInt();
+        int height = header.getInt();
+        int version = header.getInt();
+        int recalculationMode = header.getInt();
+
+        if (recalculationMode < 0 || recalculationMode >= RecalculationMode.values().length) {
+            throw new StreamCorruptedException("Unknown recalculation mode " + recalculationMode);
+        }
+
+        this.channel = channel;
+        this.layout = LayoutImpl.create(SizeImpl.create(width, height), rows, columns);
+        this.version = version;
+        this.recalculationMode = RecalculationMode.values()[recalculationMode];
+        this.numberOfCells = header.getLong();
+        this.numberOfTiles = header.getInt();
+        long indexPosition = header.getLong();
+
+        ByteBuffer name = ByteBuffer.allocate(header.getInt());
+        readFully(channel, name, HEADER_BYTES);
+        this.name = new String(name.array(), StandardCharsets.UTF_8);
+
+        this.index = channel.map(FileChannel.MapMode.READ_ONLY, indexPosition, (long) numberOfTiles * INDEX_ENTRY_BYTES);
+        this.cells = CellStorage.create();
+        this.loadedTiles = new HashSet<>();
+    }
+
+    public static MappedSheet open(Path path) throws IOException {
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            return new MappedSheet(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Every cell goes to the tile of its coordinate. The cells that refer to a cell are found from the original
+    // values, so writing costs a single pass over the cells of any sheet or version.
+    public static void write(SheetGetters sheet, Path path) throws IOException {
+
+        SortedMap<Long, List<CellGetters>> tiles = new TreeMap<>();
+        Map<Coordinate, List<Coordinate>> influenceOn = new HashMap<>();
+
+        sheet.getActiveCells().values().forEach(cell -> {
+            Coordinate coordinate = cell.getCoordinate();
+            tiles.computeIfAbsent(tileOf(coordinate.getRow(), coordinate.getCol()), tile -> new ArrayList<>()).add(cell);
+
+            for (Coordinate influenceFrom : cell.getReferences()) {
+                influenceOn.computeIfAbsent(influenceFrom, dependents -> new ArrayList<>()).add(coordinate);
+            }
+        });
+
+        byte[] name = sheet.getName().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream index = new ByteArrayOutputStream(tiles.size() * INDEX_ENTRY_BYTES);
+        DataOutputStream indexOut = new DataOutputStream(index);
+        long position = HEADER_BYTES + name.length;
+        long numberOfCells = 0;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            for (Map.Entry<Long, List<CellGetters>> tile : tiles.entrySet()) {
+                List<CellGetters> tileCells = tile.getValue();
+                tileCells.sort(Comparator.comparingInt((CellGetters cell) -> cell.getCoordinate().getRow())
+                        .thenComparingInt(cell -> cell.getCoordinate().getCol()));
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(tileCells.size());
+
+                for (CellGetters cell : tileCells) {
+                    byte[] originalValue = cell.getOriginalValue().getBytes(StandardCharsets.UTF_8);
+                    List<Coordinate> dependents = influenceOn.getOrDefault(cell.getCoordinate(), List.of());
+
+                    out.writeByte(cell.getCoordinate().getRow() & TILE_MASK);
+                    out.writeByte(cell.getCoordinate().getCol() & TILE_MASK);
+                    out.writeInt(cell.getVersion());
+                    out.writeInt(originalValue.length);
+                    out.write(originalValue);
+                    out.writeInt(dependents.size());
+
+                    for (Coordinate dependent : dependents) {
+                        out.writeInt(dependent.getRow());
+                        out.writeInt(dependent.getCol());
+                    }
+                }
+
+                indexOut.writeLong(tile.getKey());
+                indexOut.writeLong(position);
+                indexOut.writeInt(bytes.size());
+                writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()), position);
+                position += bytes.size();
+                numberOfCells += tileCells.size();
+            }
+
+            writeFully(channel, ByteBuffer.wrap(index.toByteArray()), position);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + name.length)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(sheet.getLayout().getRows())
+                    .putInt(sheet.getLayout().getColumns())
+                    .putInt(sheet.getLayout().getSize().getWidth())
+                    .putInt(sheet.getLayout().getSize().getHeight())
+                    .putInt(sheet.getVersion())
+                    .putInt(sheet.getRecalculationMode().ordinal())
+                    .putLong(numberOfCells)
+                    .putInt(tiles.size())
+                    .putLong(position)
+                    .putInt(name.length)
+                    .put(name);
+
+            writeFully(channel, header.flip(), 0);
+        }
+    }
+
+    // Reads every tile into a sheet that can be edited, with the versions of its cells.
+    public Sheet toSheet() {
+
+        loadAllTiles();
+
+        Map<Coordinate, String> originalValues = new HashMap<>();
+        Map<Coordinate, Integer> cellVersions = new HashMap<>();
+
+        cells.forEach(cell -> {
+            originalValues.put(cell.getCoordinate(), cell.getOriginalValue());
+            cellVersions.put(cell.getCoordinate(), cell.getVersion());
+        });
+
+        Sheet sheet = SheetImpl.create(name, layout);
+        sheet.setVersion(version);
+        sheet.setRecalculationMode(recalculationMode);
+        sheet.editCells(originalValues);
+        sheet.restoreCellVersions(cellVersions);
+
+        return sheet;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public LayoutGetters getLayout() {
+        return this.layout;
+    }
+
+    @Override
+    public int getVersion() {
+        return this.version;
+    }
+
+    @Override
+    public Cell getCell(Coordinate coordinate) {
+
+        if (coordinate.getRow() >= layout.getRows() || coordinate.getCol() >= layout.getColumns()) {
+            throw new IllegalArgumentException("Row or column out of bounds !");
+        }
+
+        return cellAt(coordinate.getRow(), coordinate.getCol());
+    }
+
+    @Override
+    public int getNumberOfCellsThatChanged() {
+        return 0;
+    }
+
+    @Override
+    public int getNumberOfSkippedEvaluations() {
+        return 0;
+    }
+
+    // Looking up a cell reads only its tile, going over the cells reads all of them.
+    @Override
+    public Map<CoordinateGetters, CellGetters> getActiveCells() {
+        return new CellsView();
+    }
+
+    // The index is sorted by tile row first, so the tiles of the last tile row are at its end, and only those are read.
+    @Override
+    public int getUsedRows() {
+
+        int usedRows = 0;
+        long lastTileRow = numberOfTiles == 0 ? 0 : keyAt(numberOfTiles - 1) >>> Integer.SIZE;
+
+        for (int entry = numberOfTiles - 1; entry >= 0 && keyAt(entry) >>> Integer.SIZE == lastTileRow; entry--) {
+            for (Cell cell : cellsOfTile(entry)) {
+                usedRows = Math.max(usedRows, cell.getCoordinate().getRow() + 1);
+            }
+        }
+
+        return usedRows;
+    }
+
+    // The last tile column is found in the index, and then only the tiles of that column are read.
+    @Override
+    public int getUsedColumns() {
+
+        int lastTileColumn = -1;
+
+        for (int entry = 0; entry < numberOfTiles; entry++) {
+            lastTileColumn = Math.max(lastTileColumn, (int) keyAt(entry));
+        }
+
+        int usedColumns = 0;
+
+        for (int entry = 0; entry < numberOfTiles; entry++) {
+            if ((int) keyAt(entry) == lastTileColumn) {
+                for (Cell cell : cellsOfTile(entry)) {
+                    usedColumns = Math.max(usedColumns, cell.getCoordinate().getCol() + 1);
+                }
+            }
+        }
+
+        return usedColumns;
+    }
+
+    @Override
+    public void forEachCellInRow(int row, Consumer<? super CellGetters> action) {
+
+        long first = (long) (row >>> TILE_BITS) << Integer.SIZE;
+
+        for (int entry = firstEntryFrom(first); entry < numberOfTiles && keyAt(entry) >>> Integer.SIZE == row >>> TILE_BITS; entry++) {
+            loadTile(entry);
+        }
+
+        cells.forEachInRow(row, action);
+    }
+
+    @Override
+    public void forEachCellInColumn(int column, Consumer<? super CellGetters> action) {
+
+        for (int entry = 0; entry < numberOfTiles; entry++) {
+            if ((int) keyAt(entry) == column >>> TILE_BITS) {
+                loadTile(entry);
+            }
+        }
+
+        cells.forEachInColumn(column, action);
+    }
+
+    @Override
+    public Data getCellData(String cellId) {
+        return new DataImpl(DataType.UNKNOWN,1);
+    }
+
+    @Override
+    public RecalculationMode getRecalculationMode() {
+        return this.recalculationMode;
+    }
+
+    private MappedCell cellAt(int row, int column) {
+
+        long tile = tileOf(row, column);
+
+        if (!loadedTiles.contains(tile)) {
+            int entry = firstEntryFrom(tile);
+
+            if (entry == numberOfTiles || keyAt(entry) != tile) {
+                return null;
+            }
+
+            loadTile(entry);
+        }
+
+        return (MappedCell) cells.get(row, column);
+    }
+
+    // The number of tiles read so far, for the checks of this package.
+    int getNumberOfLoadedTiles() {
+        return loadedTiles.size();
+    }
+
+    private List<Cell> cellsOfTile(int entry) {
+
+        loadTile(entry);
+
+        long key = keyAt(entry);
+        int tileRow = (int) (key >>> Integer.SIZE) << TILE_BITS;
+        int tileColumn = (int) key << TILE_BITS;
+        List<Cell> tileCells = new ArrayList<>();
+
+        for (int row = tileRow; row <= tileRow + TILE_MASK; row++) {
+            for (int column = tileColumn; column <= tileColumn + TILE_MASK; column++) {
+                Cell cell = cells.get(row, column);
+
+                if (cell != null) {
+                    tileCells.add(cell);
+                }
+            }
+        }
+
+        return tileCells;
+    }
+
+    private void loadAllTiles() {
+        for (int entry = 0; entry < numberOfTiles; entry++) {
+            loadTile(entry);
+        }
+    }
+
+    private void loadTile(int entry) {
+
+        long key = keyAt(entry);
+
+        if (!loadedTiles.add(key)) {
+            return;
+        }
+
+        int tileRow = (int) (key >>> Integer.SIZE) << TILE_BITS;
+        int tileColumn = (int) key << TILE_BITS;
+        int offset = entry * INDEX_ENTRY_BYTES;
+
+        try {
+            MappedByteBuffer tile = channel.map(FileChannel.MapMode.READ_ONLY, index.getLong(offset + Long.BYTES),
+                    index.getInt(offset + 2 * Long.BYTES));
+
+            for (int count = tile.getInt(); count > 0; count--) {
+                Coordinate coordinate = CoordinateFactory.createCoordinate(tileRow + tile.get(), tileColumn + tile.get());
+                int cellVersion = tile.getInt();
+                byte[] originalValue = new byte[tile.getInt()];
+                tile.get(originalValue);
+                Coordinate[] influenceOn = new Coordinate[tile.getInt()];
+
+                for (int i = 0; i < influenceOn.length; i++) {
+                    int row = tile.getInt();
+                    influenceOn[i] = CoordinateFactory.createCoordinate(row, tile.getInt());
+                }
+
+                cells.put(new MappedCell(coordinate, cellVersion, new String(originalValue, StandardCharsets.UTF_8), influenceOn));
+            }
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read tile " + key + " of sheet " + name, e);
+        }
+    }
+
+    // The index is sorted by key, so a binary search finds the first tile with a key that isn't lower.
+    private int firstEntryFrom(long key) {
+
+        int low = 0;
+        int high = numberOfTiles;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (keyAt(middle) < key) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private long keyAt(int entry) {
+        return index.getLong(entry * INDEX_ENTRY_BYTES);
+    }
+
+    private static long tileOf(int row, int column) {
+        return (long) (row >>> TILE_BITS) << Integer.SIZE | column >>> TILE_BITS;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("The sheet file ended in the middle of its header");
+            }
+        }
+
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    // Evaluates the cell after the cells it depends on that weren't evaluated yet, without recursing through the
+    // references, so long chains don't run out of stack.
+    private void evaluate(MappedCell cellToEvaluate) {
+
+        SheetGetters sheetView = Ref.sheetView;
+        Ref.sheetView = this;
+
+        try {
+            Deque<MappedCell> path = new ArrayDeque<>();
+            Deque<ParsedExpression> pathExpressions = new ArrayDeque<>();
+            Deque<Iterator<Coordinate>> pathIterators = new ArrayDeque<>();
+            Set<MappedCell> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            visited.add(cellToEvaluate);
+            pushToPath(cellToEvaluate, path, pathExpressions, pathIterators);
+
+            while (!path.isEmpty()) {
+                if (pathIterators.peek().hasNext()) {
+                    Coordinate coordinate = pathIterators.peek().next();
+                    MappedCell affectedBy = cellAt(coordinate.getRow(), coordinate.getCol());
+
+                    if (affectedBy != null && affectedBy.effectiveValue == null && visited.add(affectedBy)) {
+                        pushToPath(affectedBy, path, pathExpressions, pathIterators);
+                    }
+                }
+                else {
+                    pathIterators.pop();
+                    path.pop().effectiveValue = pathExpressions.pop().getExpression().evaluate();
+                }
+            }
+        } finally {
+            Ref.sheetView = sheetView;
+        }
+    }
+
+    // Every cell is parsed once, for the cells it refers to and then for the expression it evaluates.
+    private static void pushToPath(MappedCell cell, Deque<MappedCell> path, Deque<ParsedExpression> pathExpressions,
+                                   Deque<Iterator<Coordinate>> pathIterators) {
+
+        ParsedExpression parsedExpression = ExpressionParser.parse(cell.originalValue);
+
+        path.push(cell);
+        pathExpressions.push(parsedExpression);
+        pathIterators.push(parsedExpression.getReferences().iterator());
+    }
+
+    // A cell read from a tile. It keeps the coordinates of its dependents, and reads their tiles only when
+    // they're asked for.
+    private class MappedCell implements Cell {
+
+        private final Coordinate coordinate;
+        private final int version;
+        private final String originalValue;
+        private final Coordinate[] influenceOn;
+        private Data effectiveValue;
+
+        private MappedCell(Coordinate coordinate, int version, String originalValue, Coordinate[] influenceOn) {
+            this.coordinate = coordinate;
+            this.version = version;
+            this.originalValue = originalValue;
+            this.influenceOn = influenceOn;
+        }
+
+        @Override
+        public Coordinate getCoordinate() {
+            return this.coordinate;
+        }
+
+        @Override
+        public int getId() {
+            return -1;
+        }
+
+        @Override
+        public int getVersion() {
+            return this.version;
+        }
+
+        @Override
+        public String getOriginalValue() {
+            return this.originalValue;
+        }
+
+        @Override
+        public Data getEffectiveValue() {
+
+            if (effectiveValue == null) {
+                evaluate(this);
+            }
+
+            return this.effectiveValue;
+        }
+
+        @Override
+        public boolean isDirty() {
+            return false;
+        }
+
+        @Override
+        public Set<Cell> getInfluenceFrom() {
+
+            Set<Cell> influenceFrom = new HashSet<>();
+
+            for (Coordinate coordinate : getReferences()) {
+                influenceFrom.add(cellAt(coordinate.getRow(), coordinate.getCol()));
+            }
+
+            return Collections.unmodifiableSet(influenceFrom);
+        }
+
+        @Override
+        public Set<Coordinate> getReferences() {
+            return OrignalValueUtilis.findInfluenceFrom(originalValue);
+        }
+
+        @Override
+        public Set<Cell> getInfluenceOn() {
+
+            Set<Cell> influenceOn = new HashSet<>();
+
+            for (Coordinate coordinate : this.influenceOn) {
+                influenceOn.add(cellAt(coordinate.getRow(), coordinate.getCol()));
+            }
+
+            return Collections.unmodifiableSet(influenceOn);
+        }
+
+        @Override
+        public void computeEffectiveValue() {
+            throw new UnsupportedOperationException("A sheet file cannot be changed");
+        }
+
+        @Override
+        public void markDirty(CellEvaluator evaluator) {
+            throw new UnsupportedOperationException("A sheet file cannot be changed");
+        }
+
+        @Override
+        public void setOriginalValue(String originalValue) {
+            throw new UnsupportedOperationException("A sheet file cannot be changed");
+        }
+
+        @Override
+        public void setInfluenceOn(Set<Cell> influenceOn) {
+            throw new UnsupportedOperationException("A sheet file cannot be changed");
+        }
+
+        @Override
+        public void setInfluenceFrom(Set<Cell> influenceFrom) {
+            throw new UnsupportedOperationException("A sheet file cannot be changed");
+        }
+
+        @Override
+        public void setVersion(int changeInVersion) {
+            throw new UnsupportedOperationException("A sheet file cannot be changed");
+        }
+
+        @Override
+        public void setId(int id) {
+            throw new UnsupportedOperationException("A sheet file cannot be changed");
+        }
+    }
+
+    private class CellsView extends AbstractMap<CoordinateGetters, CellGetters> {
+
+        @Override
+        public int size() {
+            return (int) Math.min(numberOfCells, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public CellGetters get(Object key) {
+
+            if (!(key instanceof CoordinateGetters coordinate)
+                    || coordinate.getRow() >= layout.getRows() || coordinate.getCol() >= layout.getColumns()) {
+                return null;
+            }
+
+            return cellAt(coordinate.getRow(), coordinate.getCol());
+        }
+
+        @Override
+        public Set<Entry<CoordinateGetters, CellGetters>> entrySet() {
+
+            loadAllTiles();
+
+            return cells.asMap().entrySet();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package sheet.impl;
+
+import sheet.cell.impl.CellSnapshot;
+import sheet.coordinate.api.CoordinateGetters;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+
+// An immutable map from coordinate to cell snapshot, built as a hash array mapped trie. Every node keeps a bitmap of
+// the 32 slots it uses and only the used slots, and a snapshot is pushed one level down only when another one
+// needs its slot, so the trie stays about log32(size) deep. A change copies only the nodes on the path to the
+// changed cells, and everything else is shared with the map it was made from.
+public class PersistentCellMap implements Iterable<CellSnapshot>, Serializable {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentCellMap EMPTY = new PersistentCellMap(new Node(null, 0, new Object[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentCellMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public static PersistentCellMap empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public CellSnapshot get(int row, int column) {
+        return find(root, row, column);
+    }
+
+    public CellSnapshot get(CoordinateGetters coordinate) {
+        return get(coordinate.getRow(), coordinate.getCol());
+    }
+
+    // Returns a map with the updated cells put in and the removed coordinates taken out. The nodes copied for this
+    // call are changed in place while it runs and never again, so a batch doesn't copy the same path twice.
+    public PersistentCellMap withChanges(Collection<CellSnapshot> updated, Collection<? extends CoordinateGetters> removed) {
+
+        Object edit = new Object();
+        Node newRoot = root;
+        int newSize = size;
+
+        for (CellSnapshot cell : updated) {
+            int row = cell.getCoordinate().getRow();
+            int column = cell.getCoordinate().getCol();
+
+            if (find(newRoot, row, column) == null) {
+                newSize++;
+            }
+            newRoot = newRoot.put(edit, cell, hashOf(row, column), 0);
+        }
+
+        for (CoordinateGetters coordinate : removed) {
+            int row = coordinate.getRow();
+            int column = coordinate.getCol();
+
+            if (find(newRoot, row, column) != null) {
+                newSize--;
+                newRoot = newRoot.remove(edit, row, column, hashOf(row, column), 0);
+            }
+        }
+
+        return newRoot == root ? this : new PersistentCellMap(newRoot, newSize);
+    }
+
+    @Override
+    public void forEach(Consumer<? super CellSnapshot> action) {
+        root.forEach(action);
+    }
+
+    // Depth first over the trie, the path is kept as a stack of nodes and slot indexes.
+    @Override
+    public Iterator<CellSnapshot> iterator() {
+
+        return new Iterator<>() {
+
+            private final Deque<Node> nodes = new ArrayDeque<>();
+            private final Deque<Integer> indexes = new ArrayDeque<>();
+            private CellSnapshot next;
+
+            {
+                nodes.push(root);
+                indexes.push(0);
+                advance();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public CellSnapshot next() {
+
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+
+                CellSnapshot cell = next;
+                advance();
+
+                return cell;
+            }
+
+            private void advance() {
+
+                next = null;
+
+                while (next == null && !nodes.isEmpty()) {
+                    Node node = nodes.peek();
+                    int index = indexes.pop();
+
+                    if (index == node.slots.length) {
+                        nodes.pop();
+                        continue;
+                    }
+
+                    indexes.push(index + 1);
+
+                    if (node.slots[index] instanceof Node child) {
+                        nodes.push(child);
+                        indexes.push(0);
+                    }
+                    else {
+                        next = (CellSnapshot) node.slots[index];
+                    }
+                }
+            }
+        };
+    }
+
+    private static CellSnapshot find(Node root, int row, int column) {
+
+        long hash = hashOf(row, column);
+        Node node = root;
+
+        for (int shift = 0; ; shift += BITS) {
+            int bit = bitOf(hash, shift);
+
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+
+            Object slot = node.slots[node.indexOf(bit)];
+
+            if (slot instanceof Node child) {
+                node = child;
+            }
+            else {
+                CellSnapshot cell = (CellSnapshot) slot;
+                return isAt(cell, row, column) ? cell : null;
+            }
+        }
+    }
+
+    private static boolean isAt(CellSnapshot cell, int row, int column) {
+        return cell.getCoordinate().getRow() == row && cell.getCoordinate().getCol() == column;
+    }
+
+    // A bijective mix of the packed coordinate, so two cells never share a hash and neighbouring cells
+    // spread over the whole trie.
+    private static long hashOf(int row, int column) {
+
+        long hash = (long) row << 32 | (column & 0xFFFFFFFFL);
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+
+        return hash ^ (hash >>> 33);
+    }
+
+    private static int bitOf(long hash, int shift) {
+        return 1 << ((int) (hash >>> shift) & MASK);
+    }
+
+    private static final class Node implements Serializable {
+
+        // The call that created the node, it may change the node in place. Not kept when the map is serialized.
+        private transient Object edit;
+        private int bitmap;
+        // Every slot is either a child node or a cell snapshot.
+        private Object[] slots;
+
+        private Node(Object edit, int bitmap, Object[] slots) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private int indexOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private Node editableBy(Object edit) {
+            return this.edit == edit ? this : new Node(edit, bitmap, slots.clone());
+        }
+
+        private Node put(Object edit, CellSnapshot cell, long hash, int shift) {
+
+            int bit = bitOf(hash, shift);
+            int index = indexOf(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                newSlots[index] = cell;
+                System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+
+                Node node = editableBy(edit);
+                node.bitmap |= bit;
+                node.slots = newSlots;
+                return node;
+            }
+
+            Object slot = slots[index];
+            Object newSlot;
+
+            if (slot instanceof Node child) {
+                newSlot = child.put(edit, cell, hash, shift + BITS);
+            }
+            else {
+                CellSnapshot existing = (CellSnapshot) slot;
+                CoordinateGetters coordinate = existing.getCoordinate();
+
+                newSlot = isAt(cell, coordinate.getRow(), coordinate.getCol()) ? cell
+                        : merge(edit, existing, hashOf(coordinate.getRow(), coordinate.getCol()), cell, hash, shift + BITS);
+            }
+
+            if (newSlot == slot) {
+                return this;
+            }
+
+            Node node = editableBy(edit);
+            node.slots[index] = newSlot;
+            return node;
+        }
+
+        private Node remove(Object edit, int row, int column, long hash, int shift) {
+
+            int bit = bitOf(hash, shift);
+            int index = indexOf(bit);
+            Object slot = slots[index];
+            Object newSlot = null;
+
+            if (slot instanceof Node child) {
+                Node newChild = child.remove(edit, row, column, hash, shift + BITS);
+
+                // A node left with a single snapshot is folded into its parent, so the trie stays shallow.
+                newSlot = newChild.slots.length == 1 && !(newChild.slots[0] instanceof Node) ? newChild.slots[0]
+                        : newChild.slots.length == 0 ? null : newChild;
+            }
+
+            Node node = editableBy(edit);
+
+            if (newSlot != null) {
+                node.slots[index] = newSlot;
+                return node;
+            }
+
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+            node.bitmap &= ~bit;
+            node.slots = newSlots;
+            return node;
+        }
+
+        private void forEach(Consumer<? super CellSnapshot> action) {
+
+            for (Object slot : slots) {
+                if (slot instanceof Node child) {
+                    child.forEach(action);
+                }
+                else {
+                    action.accept((CellSnapshot) slot);
+                }
+            }
+        }
+
+        private static Node merge(Object edit, CellSnapshot first, long firstHash, CellSnapshot second, long secondHash, int shift) {
+
+            int firstBit = bitOf(firstHash, shift);
+            int secondBit = bitOf(secondHash, shift);
+
+            if (firstBit == secondBit) {
+                return new Node(edit, firstBit, new Object[] { merge(edit, first, firstHash, second, secondHash, shift + BITS) });
+            }
+
+            Object[] slots = Integer.compareUnsigned(firstBit, secondBit) < 0
+                    ? new Object[] { first, second } : new Object[] { second, first };
+
+            return new Node(edit, firstBit | secondBit, slots);
+        }
+    }
+}
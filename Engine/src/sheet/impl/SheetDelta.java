@@ -0,0 +1,106 @@
+package sheet.impl;
+
+import sheet.api.RecalculationMode;
+import sheet.cell.impl.CellSnapshot;
+import sheet.coordinate.api.Coordinate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// What changed in a sheet from one snapshot to the next: the cells that were inserted or got new values,
+// the coordinates whose cells were removed, and the details of the version itself.
+public class SheetDelta implements Serializable {
+
+    private static final int DELTA_BYTES = 64;
+    private static final int CELL_BYTES = 96;
+    private static final int COORDINATE_BYTES = 24;
+
+    private final int version;
+    private final int numberOfCellsThatChanged;
+    private final int numberOfSkippedEvaluations;
+    private final RecalculationMode recalculationMode;
+    private final List<CellSnapshot> updatedCells;
+    private final List<Coordinate> removedCells;
+
+    private SheetDelta(int version, int numberOfCellsThatChanged, int numberOfSkippedEvaluations,
+                       RecalculationMode recalculationMode, List<CellSnapshot> updatedCells, List<Coordinate> removedCells) {
+        this.version = version;
+        this.numberOfCellsThatChanged = numberOfCellsThatChanged;
+        this.numberOfSkippedEvaluations = numberOfSkippedEvaluations;
+        this.recalculationMode = recalculationMode;
+        this.updatedCells = updatedCells;
+        this.removedCells = removedCells;
+    }
+
+    public static SheetDelta create(int version, int numberOfCellsThatChanged, int numberOfSkippedEvaluations,
+                                    RecalculationMode recalculationMode, List<CellSnapshot> updatedCells, List<Coordinate> removedCells) {
+        return new SheetDelta(version, numberOfCellsThatChanged, numberOfSkippedEvaluations, recalculationMode,
+                List.copyOf(updatedCells), List.copyOf(removedCells));
+    }
+
+    public int getVersion() {
+        return this.version;
+    }
+
+    public int getNumberOfCellsThatChanged() {
+        return this.numberOfCellsThatChanged;
+    }
+
+    public int getNumberOfSkippedEvaluations() {
+        return this.numberOfSkippedEvaluations;
+    }
+
+    public RecalculationMode getRecalculationMode() {
+        return this.recalculationMode;
+    }
+
+    public List<CellSnapshot> getUpdatedCells() {
+        return this.updatedCells;
+    }
+
+    public List<Coordinate> getRemovedCells() {
+        return this.removedCells;
+    }
+
+    // One delta that does what the earlier delta and then this one do, with the details of this version.
+    public SheetDelta after(SheetDelta earlier) {
+
+        // A null snapshot stands for a removed cell.
+        Map<Coordinate, CellSnapshot> cells = new LinkedHashMap<>();
+
+        for (SheetDelta delta : List.of(earlier, this)) {
+            delta.updatedCells.forEach(cell -> cells.put(cell.getCoordinate(), cell));
+            delta.removedCells.forEach(coordinate -> cells.put(coordinate, null));
+        }
+
+        List<CellSnapshot> updatedCells = new ArrayList<>();
+        List<Coordinate> removedCells = new ArrayList<>();
+
+        cells.forEach((coordinate, cell) -> {
+            if (cell == null) {
+                removedCells.add(coordinate);
+            }
+            else {
+                updatedCells.add(cell);
+            }
+        });
+
+        return create(version, numberOfCellsThatChanged, numberOfSkippedEvaluations, recalculationMode, updatedCells, removedCells);
+    }
+
+    // A rough count of the bytes the delta takes on the heap: the object headers and fields of every cell snapshot
+    // and coordinate, and two bytes per character of the original values.
+    public long estimateByteSize() {
+
+        long byteSize = DELTA_BYTES + (long) removedCells.size() * COORDINATE_BYTES;
+
+        for (CellSnapshot cell : updatedCells) {
+            byteSize += CELL_BYTES + COORDINATE_BYTES + 2L * cell.getOriginalValue().length();
+        }
+
+        return byteSize;
+    }
+}
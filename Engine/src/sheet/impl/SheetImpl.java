@@ -4,11 +4,14 @@ import expression.api.Data;
 import expression.api.DataType;
 import expression.impl.DataImpl;
 import expression.impl.Ref;
-import expression.parser.OrignalValueUtilis;
+import sheet.api.RecalculationMode;
 import sheet.api.Sheet;
+import sheet.api.SheetGetters;
 import sheet.cell.api.Cell;
+import sheet.cell.api.CellEvaluator;
 import sheet.cell.api.CellGetters;
 import sheet.cell.impl.CellImpl;
+import sheet.cell.impl.CellSnapshot;
 import sheet.coordinate.api.Coordinate;
 import sheet.coordinate.api.CoordinateGetters;
 import sheet.coordinate.impl.CoordinateFactory;
@@ -17,15 +20,38 @@ import sheet.layout.api.LayoutGetters;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 
 public class SheetImpl implements Sheet, Serializable {
 
+    // Below these sizes a recalculation (or a single level of it) is cheaper on the caller thread.
+    private static final int PARALLEL_THRESHOLD = 256;
+    private static final int PARALLEL_TASK_SIZE = 64;
+
     private final String name;
     private final Layout layout;
     private int version;
-    private Map<Coordinate, Cell> activeCells;
+    private CellStorage activeCells;
+    // For every dependency A -> B (B refers to A) the rank of A is lower than the rank of B. New ranks are taken
+    // above the highest one or below the lowest one, and the ranks are numbered again once either end runs out.
+    private final DependencyGraph dependencyGraph;
+    private int highestRank;
+    private int lowestRank;
     private int numberOfCellsThatChanged;
+    private int numberOfSkippedEvaluations;
+    // The cells of the last snapshot, and the coordinates whose cells were inserted, removed or changed since then.
+    private PersistentCellMap snapshotCells;
+    private Set<Coordinate> changedSinceSnapshot;
+    // The cells the lazy mode marked dirty since the last snapshot.
+    private Set<Cell> markedSinceSnapshot;
+    private RecalculationMode recalculationMode;
+    private transient ForkJoinPool recalculationPool;
+    private final CellEvaluator dirtyCellEvaluator;
 
     private SheetImpl(String name, Layout layout) {
 
@@ -40,7 +66,13 @@ public class SheetImpl implements Sheet, Serializable {
         this.name = name;
         this.layout = layout;
         this.version = 1;
-        this.activeCells = new HashMap<>();
+        this.activeCells = CellStorage.create();
+        this.dependencyGraph = DependencyGraph.create();
+        this.recalculationMode = RecalculationMode.SEQUENTIAL;
+        this.dirtyCellEvaluator = new DirtyCellEvaluator();
+        this.snapshotCells = PersistentCellMap.empty();
+        this.changedSinceSnapshot = new HashSet<>();
+        this.markedSinceSnapshot = Collections.newSetFromMap(new IdentityHashMap<>());
     }
 
     public static SheetImpl create(String name, Layout layout) {
@@ -76,14 +108,53 @@ public class SheetImpl implements Sheet, Serializable {
         return activeCells.get(coordinate);
     }
 
+    @Override
+    public void forEachCellInRow(int row, Consumer<? super CellGetters> action) {
+        activeCells.forEachInRow(row, action);
+    }
+
+    @Override
+    public void forEachCellInColumn(int column, Consumer<? super CellGetters> action) {
+        activeCells.forEachInColumn(column, action);
+    }
+
     @Override
     public int getNumberOfCellsThatChanged() {
         return this.numberOfCellsThatChanged;
     }
 
+    @Override
+    public int getNumberOfSkippedEvaluations() {
+        return this.numberOfSkippedEvaluations;
+    }
+
     @Override
     public Map<CoordinateGetters, CellGetters> getActiveCells() {
-        return Collections.unmodifiableMap(this.activeCells);
+        return this.activeCells.asMap();
+    }
+
+    @Override
+    public int getUsedRows() {
+
+        int usedRows = 0;
+
+        for (Cell cell : activeCells) {
+            usedRows = Math.max(usedRows, cell.getCoordinate().getRow() + 1);
+        }
+
+        return usedRows;
+    }
+
+    @Override
+    public int getUsedColumns() {
+
+        int usedColumns = 0;
+
+        for (Cell cell : activeCells) {
+            usedColumns = Math.max(usedColumns, cell.getCoordinate().getCol() + 1);
+        }
+
+        return usedColumns;
     }
 
     // FOR INTERFACE lookupCellService
@@ -93,6 +164,77 @@ public class SheetImpl implements Sheet, Serializable {
         return new DataImpl(DataType.UNKNOWN,1);
     }
 
+    @Override
+    public RecalculationMode getRecalculationMode() {
+        return this.recalculationMode;
+    }
+
+    @Override
+    public void setRecalculationMode(RecalculationMode recalculationMode) {
+
+        if (recalculationMode == null) {
+            throw new IllegalArgumentException("Recalculation mode cannot be null");
+        }
+
+        // The other modes expect every cell to be up to date.
+        if (this.recalculationMode == RecalculationMode.LAZY) {
+            evaluateDirtyCells();
+        }
+
+        this.recalculationMode = recalculationMode;
+    }
+
+    @Override
+    public void setRecalculationPool(ForkJoinPool recalculationPool) {
+        this.recalculationPool = recalculationPool;
+    }
+
+    @Override
+    public void evaluateDirtyCells() {
+
+        Ref.sheetView = this;
+
+        List<Cell> dirtyCells = new ArrayList<>();
+        this.activeCells.forEach(cell -> {
+            if (cell.isDirty()) {
+                dirtyCells.add(cell);
+            }
+        });
+
+        dirtyCells.sort(Comparator.comparingInt(this::rankOf));
+        dirtyCells.forEach(Cell::computeEffectiveValue);
+    }
+
+    // Only the cells that changed since the last snapshot are copied into the persistent map, the rest is shared.
+    // Dirty cells aren't evaluated here: their snapshots are evaluated when the version is read, so in the lazy
+    // mode a version costs only the cells that were marked since the last one.
+    @Override
+    public SheetGetters takeSnapshot() {
+
+        List<CellSnapshot> updatedCells = new ArrayList<>();
+        List<Coordinate> removedCells = new ArrayList<>();
+
+        for (Coordinate coordinate : changedSinceSnapshot) {
+            Cell cell = activeCells.get(coordinate);
+
+            if (cell == null) {
+                removedCells.add(coordinate);
+            }
+            else {
+                updatedCells.add(CellSnapshot.of(cell));
+            }
+        }
+
+        snapshotCells = snapshotCells.withChanges(updatedCells, removedCells);
+        changedSinceSnapshot.clear();
+        markedSinceSnapshot.clear();
+
+        SheetDelta delta = SheetDelta.create(version, numberOfCellsThatChanged, numberOfSkippedEvaluations,
+                recalculationMode, updatedCells, removedCells);
+
+        return SheetSnapshot.create(name, layout, snapshotCells, delta);
+    }
+
     @Override
     public void setVersion(int version) {
 
@@ -109,101 +251,296 @@ public class SheetImpl implements Sheet, Serializable {
          Ref.sheetView = this;
 
          isCoordinateInBoundaries(target);
-         Cell updatedCell = CellImpl.create(target, version, originalValue);
-         Cell previousCell =  insertCellToSheet(updatedCell);
+         updateCells(Collections.singletonMap(target, originalValue));
+    }
 
-         try {
-             circleFrom(updatedCell);
-             recalculateSheetFrom(updatedCell);
-         }
-         catch(IllegalArgumentException circle){
-             insertCellToSheet(previousCell);
-             throw circle;
-         }
+    @Override
+    public void setCells(Map<Coordinate, String> originalValues) {
+
+        Ref.sheetView = this;
 
+        // Every coordinate has to be inside the sheet, and every cell we refer to has to be either
+        // part of the batch or already active in the sheet.
+        originalValues.keySet().forEach(this::isCoordinateInBoundaries);
+
+        List<Cell> updatedCells = new ArrayList<>(originalValues.size());
+        List<Coordinate> removedCoordinates = new ArrayList<>();
+        parseCells(originalValues, updatedCells, removedCoordinates);
+
+        updatedCells.forEach(updatedCell -> updatedCell.getReferences().forEach(refCoordinate -> {
+            if (!originalValues.containsKey(refCoordinate) && !this.activeCells.contains(refCoordinate)) {
+                throw new IndexOutOfBoundsException(refCoordinate + " is empty, cannot get data");
+            }
+        }));
+
+        updateCells(updatedCells, removedCoordinates);
     }
 
+    // Each batch is parsed on all the cores of the recalculation pool and then inserted as it arrives, so a cell may
+    // refer to a cell of a later batch. After the last batch the references are checked, a single pass over the whole
+    // graph ranks the cells and finds circles, and the cells are calculated level by level in parallel, whatever the
+    // recalculation mode (the lazy mode only marks them dirty). A failed load leaves the sheet half filled, so it's
+    // only for an empty sheet.
     @Override
-    public void setCells(Map<Coordinate, String> originalValues) {
+    public void loadCells(Iterator<? extends Map<Coordinate, String>> batches) {
+
+        if (activeCells.size() > 0) {
+            throw new IllegalStateException("Cells can only be loaded into an empty sheet");
+        }
 
-        // Preparing flags map so will be able to know if we've been already tried to set a specific cell.
-        Map<Coordinate, Boolean> flagMap = new HashMap<>();
+        Ref.sheetView = this;
 
-        // Preparing old original values map so if we'll have an exception while we'll try to set cells,
-        // we'll be able to roll back and redo the operation.
-        Map<Coordinate, String> oldOriginalValueMap = new HashMap<>();
+        List<Cell> insertedCells = new ArrayList<>();
+        List<Cell> createdEmptyCells = new ArrayList<>();
 
-        // Preparing a stack of coordinates, so we'll be able to know who is the first and who is the last we updated.
-        // The stack will help us to redo if needed.
-        Stack<Coordinate> updatedCellsCoordinates = new Stack<>();
+        while (batches.hasNext()) {
+            List<Map.Entry<Coordinate, String>> batch = new ArrayList<>(batches.next().entrySet());
+            batch.forEach(originalValue -> isCoordinateInBoundaries(originalValue.getKey()));
 
-        // Initialize the flags map with false values.
-        for (Coordinate coordinate : originalValues.keySet()) {
-            flagMap.put(coordinate, false);
+            for (ParsedCell parsedCell : parse(batch)) {
+                insertCellToSheet(parsedCell.cell, createdEmptyCells);
+                insertedCells.add(parsedCell.cell);
+            }
         }
 
-        try {
-            // Sending each original value to helper function.
-            originalValues.forEach((coordinate, originalValue) -> setCellsHelper(originalValues, flagMap, oldOriginalValueMap, updatedCellsCoordinates, coordinate));
-        } catch (Exception exception) {
-            // Undo the operation and move on the exception.
-            updatedCellsCoordinates.forEach(coordinate -> {
-                if (oldOriginalValueMap.containsKey(coordinate) && "".equals(oldOriginalValueMap.get(coordinate))) {
-                    this.activeCells.remove(coordinate);
-                }
-                else {
-                    setCell(coordinate, oldOriginalValueMap.get(coordinate));
-                }
-            });
+        // A cell that appeared twice keeps the last value, and an empty cell that's still there was referred to
+        // but never given.
+        insertedCells.removeIf(cell -> activeCells.get(cell.getCoordinate()) != cell);
 
-            throw exception;
+        for (Cell emptyCell : createdEmptyCells) {
+            if (activeCells.get(emptyCell.getCoordinate()) == emptyCell) {
+                throw new IndexOutOfBoundsException(emptyCell.getCoordinate() + " is empty, cannot get data");
+            }
+        }
+
+        if (insertedCells.isEmpty()) {
+            return;
         }
-        numberOfCellsThatChanged = originalValues.size();
-    }
 
-    private void setCellsHelper(Map<Coordinate, String> newOriginalValuesMap,
-                                Map<Coordinate, Boolean> flagMap,
-                                Map<Coordinate, String> oldOriginalValueMap,
-                                Stack<Coordinate> updatedCellsCoordinates,
-                                Coordinate coordinate) {
+        List<List<Cell>> levels = rankByLevels(insertedCells);
 
-        // If we touched the coordinate, go back.
-        if (flagMap.get(coordinate)) {
+        if (recalculationMode == RecalculationMode.LAZY) {
+            markDirtyFrom(insertedCells);
             return;
         }
 
-        // We touched the coordinate!
-        flagMap.put(coordinate, true);
+        Recalculation recalculation = new Recalculation(insertedCells);
+        recalculateLevels(levels, recalculation);
 
-        String newOriginalValue = newOriginalValuesMap.get(coordinate);
+        numberOfCellsThatChanged = recalculation.changedCells.size();
+        numberOfSkippedEvaluations = insertedCells.size() - recalculation.numberOfEvaluations.get();
+    }
 
-        Set<Coordinate> refCoordinates = OrignalValueUtilis.findInfluenceFrom(newOriginalValue);
+    // Parses the original values and finds their references, in parallel for a large batch. A failure is kept with
+    // its cell and the first one in the batch is thrown, just like parsing them one by one would.
+    private List<ParsedCell> parse(List<Map.Entry<Coordinate, String>> originalValues) {
 
-        // For each cell that we might be depended on, we'll do some checks:
-        // If the cell is inside 'newOriginalValuesMap', we'll do recursive operation with this cell.
-        // Else if the cell is not inside 'activeCells' map we'll throw exception because this cell is null.
-        // Else, it is inside 'activeCells' map, and we'll skip to next iteration.
+        ParsedCell[] parsedCells = new ParsedCell[originalValues.size()];
+        Parse parse = new Parse(originalValues, parsedCells, 0, parsedCells.length);
 
-        refCoordinates.forEach(refCoordinate -> {
-            if (newOriginalValuesMap.containsKey(refCoordinate)) {
-                setCellsHelper(newOriginalValuesMap, flagMap, oldOriginalValueMap, updatedCellsCoordinates, refCoordinate);
+        if (parsedCells.length < PARALLEL_THRESHOLD) {
+            parse.compute();
+        }
+        else {
+            recalculationPool().invoke(parse);
+        }
+
+        for (ParsedCell parsedCell : parsedCells) {
+            if (parsedCell.failure != null) {
+                throw parsedCell.failure;
             }
-            else if (!this.activeCells.containsKey(refCoordinate)) {
-                throw new IndexOutOfBoundsException(refCoordinate + " is empty, cannot get data");
+        }
+
+        return Arrays.asList(parsedCells);
+    }
+
+    // Kahn's algorithm over the whole sheet: the first level is the cells that don't depend on anything, and every
+    // next level is the cells whose last dependency was in the level before. The cells are ranked in that order.
+    // Cells that are never reached are on a circle or depend on one, and the depth first search finds which.
+    private List<List<Cell>> rankByLevels(List<Cell> cells) {
+
+        int[] remainingDependencies = new int[cells.stream().mapToInt(Cell::getId).max().orElse(0) + 1];
+        List<List<Cell>> levels = new ArrayList<>();
+        List<Cell> level = new ArrayList<>();
+        int numberOfRankedCells = 0;
+
+        for (Cell cell : cells) {
+            remainingDependencies[cell.getId()] = cell.getInfluenceFrom().size();
+
+            if (remainingDependencies[cell.getId()] == 0) {
+                level.add(cell);
+            }
+        }
+
+        while (!level.isEmpty()) {
+            List<Cell> nextLevel = new ArrayList<>();
+
+            for (Cell cell : level) {
+                setRank(cell, nextHighestRank());
+
+                for (Cell dependent : cell.getInfluenceOn()) {
+                    if (--remainingDependencies[dependent.getId()] == 0) {
+                        nextLevel.add(dependent);
+                    }
+                }
+            }
+
+            numberOfRankedCells += level.size();
+            levels.add(level);
+            level = nextLevel;
+        }
+
+        if (numberOfRankedCells < cells.size()) {
+            circleFrom(cells);
+        }
+
+        return levels;
+    }
+
+    @Override
+    public Map<Coordinate, String> editCells(Map<Coordinate, String> originalValues) {
+
+        Ref.sheetView = this;
+
+        originalValues.keySet().forEach(this::isCoordinateInBoundaries);
+
+        return updateCells(originalValues);
+    }
+
+    // Sets the versions of cells that are read back from a file, without evaluating anything.
+    @Override
+    public void restoreCellVersions(Map<Coordinate, Integer> cellVersions) {
+
+        cellVersions.forEach((coordinate, cellVersion) -> {
+            Cell cell = activeCells.get(coordinate);
+
+            if (cell != null && cell.getVersion() != cellVersion) {
+                cell.setVersion(cellVersion);
+                changedSinceSnapshot.add(coordinate);
+            }
+        });
+    }
+
+    // Inserts the whole batch, wires its dependencies, checks for circles once and recalculates the union of
+    // the affected cells in a single pass by topological rank, so every cell is evaluated at most once per batch.
+    // A null original value removes the cell. Returns the original values that undo the batch, where null
+    // stands for a cell that didn't exist before it.
+    private Map<Coordinate, String> updateCells(Map<Coordinate, String> originalValues) {
+
+        List<Cell> updatedCells = new ArrayList<>(originalValues.size());
+        List<Coordinate> removedCoordinates = new ArrayList<>();
+        parseCells(originalValues, updatedCells, removedCoordinates);
+
+        return updateCells(updatedCells, removedCoordinates);
+    }
+
+    // Parsing every original value before touching the sheet, so an invalid expression fails the whole batch.
+    private void parseCells(Map<Coordinate, String> originalValues, List<Cell> updatedCells,
+                            List<Coordinate> removedCoordinates) {
+
+        originalValues.forEach((coordinate, originalValue) -> {
+            if (originalValue == null) {
+                removedCoordinates.add(coordinate);
+            }
+            else {
+                updatedCells.add(CellImpl.create(coordinate, version, originalValue));
             }
         });
+    }
 
-        if (this.activeCells.containsKey(coordinate)) {
-            Cell cell = this.activeCells.get(coordinate);
-            oldOriginalValueMap.put(coordinate, cell.getOriginalValue());
+    private Map<Coordinate, String> updateCells(List<Cell> updatedCells, List<Coordinate> removedCoordinates) {
+
+        // Remembering which cell each updated cell replaced (null for new cells), which cells were removed and
+        // which empty cells were created for references, so we'll be able to roll back the batch.
+        Map<Coordinate, Cell> previousCells = new HashMap<>();
+        List<Cell> removedCells = new ArrayList<>();
+        List<Cell> createdEmptyCells = new ArrayList<>();
+
+        for (Cell updatedCell : updatedCells) {
+            previousCells.put(updatedCell.getCoordinate(), insertCellToSheet(updatedCell, createdEmptyCells));
         }
 
-        else {
-            oldOriginalValueMap.put(coordinate, "");
+        // A cell that other cells still refer to can't be removed, so it's left as an empty cell instead. The cells
+        // are removed from the highest rank down, so a removed cell doesn't keep the cells it refers to.
+        List<Cell> cellsToRemove = new ArrayList<>();
+        removedCoordinates.forEach(coordinate -> {
+            if (activeCells.contains(coordinate)) {
+                cellsToRemove.add(activeCells.get(coordinate));
+            }
+        });
+        cellsToRemove.sort(Comparator.comparingInt(this::rankOf).reversed());
+
+        for (Cell toRemove : cellsToRemove) {
+            Coordinate coordinate = toRemove.getCoordinate();
+
+            if (toRemove.getInfluenceOn().isEmpty()) {
+                removeCellFromSheet(toRemove);
+                removedCells.add(toRemove);
+            }
+            else {
+                Cell emptyCell = CellImpl.create(coordinate, version, DataImpl.empty);
+                previousCells.put(coordinate, insertCellToSheet(emptyCell, createdEmptyCells));
+                updatedCells.add(emptyCell);
+            }
+        }
+
+        Map<Coordinate, String> inverse = new HashMap<>();
+        previousCells.forEach((coordinate, previousCell) ->
+                inverse.put(coordinate, previousCell == null ? null : previousCell.getOriginalValue()));
+        removedCells.forEach(removedCell -> inverse.put(removedCell.getCoordinate(), removedCell.getOriginalValue()));
+        createdEmptyCells.forEach(emptyCell -> inverse.put(emptyCell.getCoordinate(), null));
+
+        try {
+            orderFrom(updatedCells);
+
+            if (recalculationMode == RecalculationMode.LAZY) {
+                markDirtyFrom(updatedCells);
+            }
+            else {
+                recalculateSheetFrom(updatedCells);
+            }
+        } catch (RuntimeException exception) {
+            rollback(updatedCells, previousCells, removedCells, createdEmptyCells);
+            throw exception;
         }
 
-        setCell(coordinate, newOriginalValue);
-        updatedCellsCoordinates.push(coordinate);
+        numberOfCellsThatChanged += removedCells.size();
+
+        return Collections.unmodifiableMap(inverse);
+    }
+
+    private void rollback(List<Cell> updatedCells, Map<Coordinate, Cell> previousCells, List<Cell> removedCells,
+                          List<Cell> createdEmptyCells) {
+
+        List<Cell> restoredCells = new ArrayList<>();
+
+        // The removals came after the insertions, so they're undone first.
+        for (Cell removedCell : removedCells) {
+            insertCellToSheet(removedCell, new ArrayList<>());
+            restoredCells.add(removedCell);
+        }
+
+        // Undo the insertions from the last to the first one.
+        for (int i = updatedCells.size() - 1; i >= 0; i--) {
+            Cell updatedCell = updatedCells.get(i);
+            Cell previousCell = previousCells.get(updatedCell.getCoordinate());
+
+            if (previousCell == null) {
+                removeCellFromSheet(updatedCell);
+            }
+            else {
+                insertCellToSheet(previousCell, new ArrayList<>());
+                restoredCells.add(previousCell);
+            }
+        }
+
+        createdEmptyCells.forEach(this::removeCellFromSheet);
+        restoredCells.removeIf(cell -> this.activeCells.get(cell.getCoordinate()) != cell);
+
+        // The restored dependencies may not match the ranks anymore, and cells that depend on the restored ones
+        // may have been evaluated with the batch values.
+        rankFrom(restoredCells);
+        recalculateSheetFrom(restoredCells);
     }
 
     private boolean isCoordinateInBoundaries(Coordinate target) {
@@ -227,41 +564,236 @@ public class SheetImpl implements Sheet, Serializable {
         return version >= 1;
     }
 
-    private boolean circleFrom(Cell cellToCheck) {
-        return hasCircle(cellToCheck);
+    // Depth first search over influenceFrom. A cell is on the path while we explore what it depends on and is
+    // marked checked once it's done, so every cell and dependency of the affected subgraph is visited only once.
+    // The path is kept on the heap, so long reference chains are limited only by memory.
+    private void circleFrom(Collection<Cell> cellsToCheck) {
+
+        List<Cell> path = new ArrayList<>();
+        Deque<Iterator<Cell>> pathIterators = new ArrayDeque<>();
+        Set<Cell> onPath = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Cell> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (Cell cellToCheck : cellsToCheck) {
+
+            if (checked.contains(cellToCheck)) {
+                continue;
+            }
+
+            path.add(cellToCheck);
+            onPath.add(cellToCheck);
+            pathIterators.push(cellToCheck.getInfluenceFrom().iterator());
+
+            while (!pathIterators.isEmpty()) {
+
+                if (pathIterators.peek().hasNext()) {
+                    Cell affectedBy = pathIterators.peek().next();
+
+                    // If the cell is already on the path, a cycle is detected
+                    if (onPath.contains(affectedBy)) {
+                        throw new IllegalArgumentException(toCircleMessage(path, affectedBy));
+                    }
+
+                    if (!checked.contains(affectedBy)) {
+                        path.add(affectedBy);
+                        onPath.add(affectedBy);
+                        pathIterators.push(affectedBy.getInfluenceFrom().iterator());
+                    }
+                }
+                else {
+                    Cell current = path.removeLast();
+                    pathIterators.pop();
+                    onPath.remove(current);
+                    checked.add(current);
+                }
+            }
+        }
+    }
+
+    // Builds "Circular voting: A1 -> C1 -> B1 -> A1" from the end of the path back to where the cycle closes.
+    private static String toCircleMessage(List<Cell> path, Cell closingCell) {
+
+        StringBuilder message = new StringBuilder("Circular voting: ").append(closingCell.getCoordinate());
+
+        for (int i = path.size() - 1; i >= 0; i--) {
+            message.append(" -> ").append(path.get(i).getCoordinate());
+
+            if (path.get(i) == closingCell) {
+                break;
+            }
+        }
+
+        return message.toString();
     }
 
-    private boolean hasCircle(Cell cellToCheck) {
-        return recHasCircle(cellToCheck, new HashSet<Coordinate>());
+    // The same message from a path that follows the influence order, 'to' first and 'from' last, where the new
+    // dependency of 'to' on 'from' closes the cycle.
+    private static String toForwardCircleMessage(List<Cell> path) {
+
+        StringBuilder message = new StringBuilder("Circular voting: ");
+
+        for (Cell cell : path) {
+            message.append(cell.getCoordinate()).append(" -> ");
+        }
+
+        return message.append(path.getFirst().getCoordinate()).toString();
     }
 
-    private boolean recHasCircle(Cell current, Set<Coordinate> visited) {
-        try{
-            // If the current object is already visited, a cycle is detected
-            if (visited.contains(current.getCoordinate())) {
-                return true;
+    private int rankOf(Cell cell) {
+        return dependencyGraph.rankOf(cell);
+    }
+
+    private void setRank(Cell cell, int rank) {
+        dependencyGraph.setRank(cell, rank);
+    }
+
+    // Numbering the ranks again keeps the order of every cell, including the ones that are being ranked, so a pass
+    // that runs out of ranks in the middle goes on above the renumbered ones.
+    private int nextHighestRank() {
+
+        if (highestRank == Integer.MAX_VALUE) {
+            renumberRanks();
+        }
+
+        return ++highestRank;
+    }
+
+    private int nextLowestRank() {
+
+        if (lowestRank == Integer.MIN_VALUE) {
+            renumberRanks();
+        }
+
+        return --lowestRank;
+    }
+
+    private void renumberRanks() {
+        highestRank = dependencyGraph.renumberRanks() - 1;
+        lowestRank = 0;
+    }
+
+    // Only dependencies that point from a higher rank to a lower one break the order. A single updated cell is
+    // fixed edge by edge, a batch is checked for circles once and everything it influences is ranked again.
+    private void orderFrom(List<Cell> updatedCells) {
+
+        if (updatedCells.size() == 1) {
+            Cell updatedCell = updatedCells.getFirst();
+
+            for (Cell affectedBy : updatedCell.getInfluenceFrom()) {
+                if (rankOf(affectedBy) >= rankOf(updatedCell)) {
+                    addToOrder(affectedBy, updatedCell);
+                }
             }
+        }
+        else {
+            circleFrom(updatedCells);
+            rankFrom(updatedCells);
+        }
+    }
 
-            // Mark the current object as visited
-            visited.add(current.getCoordinate());
+    // Gives the cells and everything they influence new ranks above all the others, in topological order.
+    // Nothing outside of them depends on them, so every other rank stays valid.
+    private void rankFrom(Collection<Cell> cells) {
 
-            // Recur for all the objects in the relatedObjects list
-            for (Cell affectedBy : current.getInfluenceFrom()) {
-                // If a cycle is detected in the recursion, return true
-                if (recHasCircle(affectedBy, visited)) {
-                    throw new IllegalArgumentException("Circular voting: " + affectedBy.getCoordinate().toString());
+        Stack<Cell> cellStack = topologicalSortFrom(cells);
+
+        while (!cellStack.isEmpty()) {
+            setRank(cellStack.pop(), nextHighestRank());
+        }
+    }
+
+    // Pearce-Kelly: fixes the order after adding from -> to when 'from' is ranked above 'to'. Only cells ranked
+    // between the two are visited, and a circle exists exactly when 'from' is reachable from 'to'.
+    private void addToOrder(Cell from, Cell to) {
+
+        int lowerBound = rankOf(to);
+        int upperBound = rankOf(from);
+
+        List<Cell> forward = findForward(to, from, upperBound);
+        List<Cell> backward = findBackward(from, lowerBound);
+
+        // Reusing the same ranks: first the cells 'from' depends on, then the cells that depend on 'to'.
+        Comparator<Cell> byRank = Comparator.comparingInt(this::rankOf);
+        forward.sort(byRank);
+        backward.sort(byRank);
+
+        List<Integer> ranks = new ArrayList<>(forward.size() + backward.size());
+        forward.forEach(cell -> ranks.add(rankOf(cell)));
+        backward.forEach(cell -> ranks.add(rankOf(cell)));
+        Collections.sort(ranks);
+
+        int index = 0;
+        for (Cell cell : backward) {
+            setRank(cell, ranks.get(index++));
+        }
+        for (Cell cell : forward) {
+            setRank(cell, ranks.get(index++));
+        }
+    }
+
+    private List<Cell> findForward(Cell to, Cell from, int upperBound) {
+
+        List<Cell> forward = new ArrayList<>();
+        List<Cell> path = new ArrayList<>();
+        Deque<Iterator<Cell>> pathIterators = new ArrayDeque<>();
+        Set<Cell> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Cell next = to;
+
+        while (true) {
+
+            if (next != null) {
+                path.add(next);
+
+                if (next == from) {
+                    throw new IllegalArgumentException(toForwardCircleMessage(path));
                 }
+
+                visited.add(next);
+                forward.add(next);
+                pathIterators.push(next.getInfluenceOn().iterator());
+                next = null;
             }
 
-            // Remove the current object from the visited set (backtracking)
-            visited.remove(current.getCoordinate());
+            if (pathIterators.isEmpty()) {
+                return forward;
+            }
 
-            // If no cycle was found, return false
-            return false;
-        }catch (IllegalArgumentException exception) {
-           throw new IllegalArgumentException(exception.getMessage() + " -> " + current.getCoordinate().toString());
+            if (pathIterators.peek().hasNext()) {
+                Cell dependent = pathIterators.peek().next();
+
+                if (!visited.contains(dependent) && rankOf(dependent) <= upperBound) {
+                    next = dependent;
+                }
+            }
+            else {
+                pathIterators.pop();
+                path.removeLast();
+            }
         }
+    }
+
+    private List<Cell> findBackward(Cell from, int lowerBound) {
+
+        List<Cell> backward = new ArrayList<>();
+        Deque<Cell> cellStack = new ArrayDeque<>();
+        Set<Cell> visited = Collections.newSetFromMap(new IdentityHashMap<>());
 
+        visited.add(from);
+        cellStack.push(from);
+
+        while (!cellStack.isEmpty()) {
+            Cell current = cellStack.pop();
+            backward.add(current);
+
+            for (Cell affectedBy : current.getInfluenceFrom()) {
+                if (rankOf(affectedBy) > lowerBound && visited.add(affectedBy)) {
+                    cellStack.push(affectedBy);
+                }
+            }
+        }
+
+        return backward;
     }
 
     private Set<Cell> CoordinateToCell(Set<Coordinate> newInfluenceCellsId) {
@@ -273,77 +805,385 @@ public class SheetImpl implements Sheet, Serializable {
         return Cells;
     }
 
-    private Stack<Cell> topologicalSortFrom(Cell cell) {
+    private Stack<Cell> topologicalSortFrom(Collection<Cell> cells) {
 
         Stack<Cell> stack = new Stack<>();
         Set<Coordinate> visited = new HashSet<>();
 
-        // Call the recursive helper function to store topological sort starting from all cells one by one
-        for (Cell neighbor : cell.getInfluenceOn()) {
+        // Run the depth first search from every cell, sharing the visited set so cells that are
+        // reachable from several updated cells are pushed only once.
+        for (Cell cell : cells) {
 
-            if (!visited.contains(neighbor.getCoordinate())) {
-                dfs(neighbor, visited, stack);
+            if (!visited.contains(cell.getCoordinate())) {
+                dfs(cell, visited, stack);
             }
         }
-        stack.push(cell);
 
         return stack;
     }
 
-    private void dfs(Cell cell, Set<Coordinate> visited,Stack<Cell> stack) {
+    // Iterative post order depth first search, every cell is pushed to the stack after all the cells it influences.
+    private void dfs(Cell cell, Set<Coordinate> visited, Stack<Cell> stack) {
+
+        Deque<Cell> path = new ArrayDeque<>();
+        Deque<Iterator<Cell>> pathIterators = new ArrayDeque<>();
+
         visited.add(cell.getCoordinate());
+        path.push(cell);
+        pathIterators.push(cell.getInfluenceOn().iterator());
+
+        while (!path.isEmpty()) {
 
-        // Visit all the adjacent vertices
-        for (Cell neighbor : cell.getInfluenceOn()) {
+            // Visit all the adjacent vertices
+            if (pathIterators.peek().hasNext()) {
+                Cell neighbor = pathIterators.peek().next();
 
-            if (!visited.contains(neighbor.getCoordinate())) {
-                dfs(neighbor, visited, stack);
+                if (visited.add(neighbor.getCoordinate())) {
+                    path.push(neighbor);
+                    pathIterators.push(neighbor.getInfluenceOn().iterator());
+                }
+            }
+            else {
+                // Push current cell to stack which stores the result
+                pathIterators.pop();
+                stack.push(path.pop());
             }
         }
-
-        // Push current cell to stack which stores the result
-        stack.push(cell);
     }
 
-    private Cell insertCellToSheet(Cell toInsert) {
+    private Cell insertCellToSheet(Cell toInsert, List<Cell> createdEmptyCells) {
+
+        Set<Coordinate> influenceFrom = toInsert.getReferences();
+        Cell toReplace = activeCells.put(toInsert);
+        changedSinceSnapshot.add(toInsert.getCoordinate());
+
+        // A replacing cell keeps the id, the rank and the dependents of the cell it replaces.
+        if (toReplace != null) {
+            dependencyGraph.replace(toReplace, toInsert);
+        }
+        else {
+            dependencyGraph.add(toInsert);
+            setRank(toInsert, nextHighestRank());
+        }
 
-        Cell toReplace = activeCells.put(toInsert.getCoordinate(),toInsert);
-        OrignalValueUtilis.findInfluenceFrom(toInsert.getOriginalValue()).forEach(coord ->
+        influenceFrom.forEach(coord ->
         {
-            if(!activeCells.containsKey(coord)) {
+            if(!activeCells.contains(coord)) {
                 Cell c = CellImpl.create(coord,version, DataImpl.empty);
                 c.computeEffectiveValue();
-                activeCells.put(coord,c);
+                activeCells.put(c);
+                dependencyGraph.add(c);
+                // An empty cell doesn't depend on anything, so ranking it below everything keeps the order.
+                setRank(c, nextLowestRank());
+                createdEmptyCells.add(c);
+                changedSinceSnapshot.add(coord);
             }
         });
 
-        toInsert.setInfluenceFrom(CoordinateToCell(OrignalValueUtilis.findInfluenceFrom(toInsert.getOriginalValue())));
-        toInsert.getInfluenceFrom().forEach(cell -> cell.getInfluenceOn().add(toInsert));
+        dependencyGraph.setInfluenceFrom(toInsert, CoordinateToCell(influenceFrom));
+
+        return toReplace;
+    }
 
-        //if it is a new cell there is no influenceOn, if exist he may have influenced on other cells.
-        if(toReplace != null) {
-            toInsert.setInfluenceOn(toReplace.getInfluenceOn());
-            toInsert.getInfluenceOn().forEach(cell -> cell.getInfluenceFrom().add(toInsert));
-            //until here we get a new sheet now we just need to remove
-            toReplace.getInfluenceFrom().forEach(cell -> cell.getInfluenceOn().remove(toReplace));
-            toReplace.getInfluenceOn().forEach(cell -> cell.getInfluenceFrom().remove(toReplace));
+    private void removeCellFromSheet(Cell toRemove) {
 
+        if (activeCells.get(toRemove.getCoordinate()) != toRemove) {
+            return;
         }
 
-        return toReplace;
+        activeCells.remove(toRemove.getCoordinate());
+        changedSinceSnapshot.add(toRemove.getCoordinate());
+        dependencyGraph.remove(toRemove);
+    }
+
+    private void recalculateSheetFrom(Collection<Cell> cells) {
+
+        List<Cell> sortedCells = sortByRankFrom(cells);
+        Recalculation recalculation = new Recalculation(cells);
+
+        if (recalculationMode == RecalculationMode.PARALLEL && sortedCells.size() >= PARALLEL_THRESHOLD) {
+            recalculateInParallel(sortedCells, recalculation);
+        }
+        else {
+            sortedCells.forEach(recalculation::recalculate);
+        }
+
+        numberOfCellsThatChanged = recalculation.changedCells.size();
+        recalculation.changedCells.forEach(cell -> changedSinceSnapshot.add(cell.getCoordinate()));
+        numberOfSkippedEvaluations = sortedCells.size() - recalculation.numberOfEvaluations.get();
+    }
+
+    // Lazy mode: marks the cells and everything they influence as dirty. The dependents of a cell that was marked
+    // since the last snapshot were marked as well, so the marking stops at such cells and costs only the newly
+    // marked ones. A cell that is still dirty from before the last snapshot is marked again, so its snapshot is
+    // taken again and no version shares a snapshot whose inputs changed.
+    //
+    // An edit in this mode isn't evaluated, so an expression whose evaluation fails (for example a SUB out of the
+    // bounds of its string) doesn't roll the edit back the way the other modes do. Its cell keeps the original
+    // value and every read of it throws the evaluation error, until an edit makes it evaluate.
+    private void markDirtyFrom(Collection<Cell> cells) {
+
+        Deque<Cell> cellStack = new ArrayDeque<>();
+        int numberOfMarkedCells = 0;
+
+        for (Cell cell : cells) {
+            cell.markDirty(dirtyCellEvaluator);
+            cell.setVersion(version);
+            changedSinceSnapshot.add(cell.getCoordinate());
+            markedSinceSnapshot.add(cell);
+            cellStack.push(cell);
+            numberOfMarkedCells++;
+        }
+
+        while (!cellStack.isEmpty()) {
+            for (Cell dependent : cellStack.pop().getInfluenceOn()) {
+                if (!dependent.isDirty() || !markedSinceSnapshot.contains(dependent)) {
+                    dependent.markDirty(dirtyCellEvaluator);
+                    dependent.setVersion(version);
+                    changedSinceSnapshot.add(dependent.getCoordinate());
+                    markedSinceSnapshot.add(dependent);
+                    cellStack.push(dependent);
+                    numberOfMarkedCells++;
+                }
+            }
+        }
+
+        numberOfCellsThatChanged = numberOfMarkedCells;
+        numberOfSkippedEvaluations = 0;
     }
 
-    private void recalculateSheetFrom(Cell cell) {
+    // Evaluates a dirty cell after the dirty cells it depends on, in rank order. Every reference then reads a cell
+    // that is already up to date, so long chains of dirty cells don't recurse through the references.
+    private void evaluateDirtyCell(Cell dirtyCell) {
+
+        Ref.sheetView = this;
+
+        List<Cell> dirtyCells = new ArrayList<>();
+        Deque<Cell> cellStack = new ArrayDeque<>();
+        Set<Cell> visited = Collections.newSetFromMap(new IdentityHashMap<>());
 
-        Stack<Cell> cellStack = topologicalSortFrom(cell);
-        numberOfCellsThatChanged = cellStack.size();
+        visited.add(dirtyCell);
+        cellStack.push(dirtyCell);
 
         while (!cellStack.isEmpty()) {
-            Cell c = cellStack.pop();
-            c.computeEffectiveValue();
-            c.setVersion(version);
+            Cell cell = cellStack.pop();
+            dirtyCells.add(cell);
+
+            for (Cell affectedBy : cell.getInfluenceFrom()) {
+                if (affectedBy.isDirty() && visited.add(affectedBy)) {
+                    cellStack.push(affectedBy);
+                }
+            }
+        }
+
+        dirtyCells.sort(Comparator.comparingInt(this::rankOf));
+        dirtyCells.forEach(Cell::computeEffectiveValue);
+    }
+
+    private class DirtyCellEvaluator implements CellEvaluator, Serializable {
+
+        @Override
+        public void evaluate(Cell dirtyCell) {
+            evaluateDirtyCell(dirtyCell);
+        }
+    }
+
+    // Takes the cells and everything they influence from a priority queue by rank, which is a topological order.
+    private List<Cell> sortByRankFrom(Collection<Cell> cells) {
+
+        PriorityQueue<Cell> cellQueue = new PriorityQueue<>(Comparator.comparingInt(this::rankOf));
+        Set<Cell> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Cell> sortedCells = new ArrayList<>();
+
+        for (Cell cell : cells) {
+            if (queued.add(cell)) {
+                cellQueue.add(cell);
+            }
+        }
+
+        while (!cellQueue.isEmpty()) {
+            Cell cell = cellQueue.poll();
+            sortedCells.add(cell);
+
+            for (Cell dependent : cell.getInfluenceOn()) {
+                if (queued.add(dependent)) {
+                    cellQueue.add(dependent);
+                }
+            }
+        }
+
+        return sortedCells;
+    }
+
+    // Cells of the same level don't depend on each other, so each level is evaluated in parallel
+    // and the next level starts only after the previous one is done.
+    private void recalculateInParallel(List<Cell> sortedCells, Recalculation recalculation) {
+        recalculateLevels(toLevels(sortedCells), recalculation);
+    }
+
+    private void recalculateLevels(List<List<Cell>> levels, Recalculation recalculation) {
+
+        ForkJoinPool pool = recalculationPool();
+
+        for (List<Cell> level : levels) {
+            if (level.size() < PARALLEL_TASK_SIZE) {
+                level.forEach(recalculation::recalculate);
+            }
+            else {
+                pool.invoke(new LevelRecalculation(recalculation, level, 0, level.size()));
+            }
+        }
+    }
+
+    private ForkJoinPool recalculationPool() {
+        return recalculationPool != null ? recalculationPool : ForkJoinPool.commonPool();
+    }
+
+    // The level of a cell is one more than the highest level of the cells it depends on in the same recalculation.
+    private List<List<Cell>> toLevels(List<Cell> sortedCells) {
+
+        Map<Cell, Integer> cellToLevel = new IdentityHashMap<>();
+        List<List<Cell>> levels = new ArrayList<>();
+
+        for (Cell cell : sortedCells) {
+            int level = 0;
+
+            for (Cell affectedBy : cell.getInfluenceFrom()) {
+                Integer affectedByLevel = cellToLevel.get(affectedBy);
+
+                if (affectedByLevel != null) {
+                    level = Math.max(level, affectedByLevel + 1);
+                }
+            }
+
+            cellToLevel.put(cell, level);
+
+            if (level == levels.size()) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(level).add(cell);
+        }
+
+        return levels;
+    }
+
+    // A cell is evaluated only if it was updated or one of the cells it depends on changed its effective value,
+    // so propagation stops at cells whose value stays the same.
+    private class Recalculation {
+
+        private final Set<Cell> updatedCells;
+        private final Set<Cell> changedCells;
+        private final AtomicInteger numberOfEvaluations;
+
+        private Recalculation(Collection<Cell> updatedCells) {
+            this.updatedCells = Collections.newSetFromMap(new IdentityHashMap<>());
+            this.updatedCells.addAll(updatedCells);
+            this.changedCells = ConcurrentHashMap.newKeySet();
+            this.numberOfEvaluations = new AtomicInteger();
+        }
+
+        private void recalculate(Cell cell) {
+
+            boolean isUpdated = updatedCells.contains(cell);
+
+            if (!isUpdated && !isAnyInfluenceFromChanged(cell)) {
+                return;
+            }
+
+            Data previousEffectiveValue = cell.getEffectiveValue();
+            cell.computeEffectiveValue();
+            numberOfEvaluations.incrementAndGet();
+
+            if (isUpdated || !Objects.equals(previousEffectiveValue, cell.getEffectiveValue())) {
+                cell.setVersion(version);
+                changedCells.add(cell);
+            }
+        }
+
+        private boolean isAnyInfluenceFromChanged(Cell cell) {
+
+            for (Cell affectedBy : cell.getInfluenceFrom()) {
+                if (changedCells.contains(affectedBy)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
 
+    private class LevelRecalculation extends RecursiveAction {
+
+        private final Recalculation recalculation;
+        private final List<Cell> level;
+        private final int from;
+        private final int to;
+
+        private LevelRecalculation(Recalculation recalculation, List<Cell> level, int from, int to) {
+            this.recalculation = recalculation;
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= PARALLEL_TASK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    recalculation.recalculate(level.get(i));
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new LevelRecalculation(recalculation, level, from, middle),
+                    new LevelRecalculation(recalculation, level, middle, to));
         }
     }
 
+    private static class ParsedCell {
+
+        private Cell cell;
+        private RuntimeException failure;
+    }
+
+    private class Parse extends RecursiveAction {
+
+        private final List<Map.Entry<Coordinate, String>> originalValues;
+        private final ParsedCell[] parsedCells;
+        private final int from;
+        private final int to;
+
+        private Parse(List<Map.Entry<Coordinate, String>> originalValues, ParsedCell[] parsedCells, int from, int to) {
+            this.originalValues = originalValues;
+            this.parsedCells = parsedCells;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= PARALLEL_TASK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    Map.Entry<Coordinate, String> originalValue = originalValues.get(i);
+                    ParsedCell parsedCell = new ParsedCell();
+
+                    try {
+                        parsedCell.cell = CellImpl.create(originalValue.getKey(), version, originalValue.getValue());
+                    } catch (RuntimeException e) {
+                        parsedCell.failure = e;
+                    }
+
+                    parsedCells[i] = parsedCell;
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new Parse(originalValues, parsedCells, from, middle),
+                    new Parse(originalValues, parsedCells, middle, to));
+        }
+    }
 }
@@ -0,0 +1,420 @@
+package sheet.impl;
+
+import expression.api.Data;
+import expression.api.DataType;
+import expression.impl.DataImpl;
+import expression.impl.Ref;
+import expression.parser.ExpressionParser;
+import expression.parser.ParsedExpression;
+import sheet.api.RecalculationMode;
+import sheet.api.SheetGetters;
+import sheet.cell.api.Cell;
+import sheet.cell.api.CellEvaluator;
+import sheet.cell.api.CellGetters;
+import sheet.cell.impl.CellSnapshot;
+import sheet.coordinate.api.Coordinate;
+import sheet.coordinate.api.CoordinateGetters;
+import sheet.coordinate.impl.CoordinateFactory;
+import sheet.layout.api.LayoutGetters;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+
+// A read only version of a sheet. The cells are kept in a persistent map, so a snapshot shares every cell
+// that didn't change with the snapshots before and after it. The delta is what changed since the snapshot before.
+public class SheetSnapshot implements SheetGetters, Serializable {
+
+    private final String name;
+    private final LayoutGetters layout;
+    private final PersistentCellMap cells;
+    private final SheetDelta delta;
+    // The cells that refer to each coordinate, built on the first look at the dependents of a cell.
+    private transient volatile Map<Coordinate, List<CellSnapshot>> dependents;
+
+    private SheetSnapshot(String name, LayoutGetters layout, PersistentCellMap cells, SheetDelta delta) {
+        this.name = name;
+        this.layout = layout;
+        this.cells = cells;
+        this.delta = delta;
+    }
+
+    public static SheetSnapshot create(String name, LayoutGetters layout, PersistentCellMap cells, SheetDelta delta) {
+        return new SheetSnapshot(name, layout, cells, delta);
+    }
+
+    public PersistentCellMap getCells() {
+        return this.cells;
+    }
+
+    public SheetDelta getDelta() {
+        return this.delta;
+    }
+
+    // The snapshot of the version the delta leads to, sharing every cell the delta doesn't touch.
+    public SheetSnapshot apply(SheetDelta delta) {
+        return new SheetSnapshot(name, layout, cells.withChanges(delta.getUpdatedCells(), delta.getRemovedCells()), delta);
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public LayoutGetters getLayout() {
+        return this.layout;
+    }
+
+    @Override
+    public int getVersion() {
+        return this.delta.getVersion();
+    }
+
+    @Override
+    public Cell getCell(Coordinate coordinate) {
+
+        if (coordinate.getRow() >= layout.getRows() || coordinate.getCol() >= layout.getColumns()) {
+            throw new IllegalArgumentException("Row or column out of bounds !");
+        }
+
+        return toCell(cells.get(coordinate));
+    }
+
+    @Override
+    public int getNumberOfCellsThatChanged() {
+        return this.delta.getNumberOfCellsThatChanged();
+    }
+
+    @Override
+    public int getNumberOfSkippedEvaluations() {
+        return this.delta.getNumberOfSkippedEvaluations();
+    }
+
+    @Override
+    public Map<CoordinateGetters, CellGetters> getActiveCells() {
+        return new CellsView();
+    }
+
+    @Override
+    public int getUsedRows() {
+
+        int usedRows = 0;
+
+        for (CellSnapshot cell : cells) {
+            usedRows = Math.max(usedRows, cell.getCoordinate().getRow() + 1);
+        }
+
+        return usedRows;
+    }
+
+    @Override
+    public int getUsedColumns() {
+
+        int usedColumns = 0;
+
+        for (CellSnapshot cell : cells) {
+            usedColumns = Math.max(usedColumns, cell.getCoordinate().getCol() + 1);
+        }
+
+        return usedColumns;
+    }
+
+    // The persistent map isn't ordered by row or column. A row or column with fewer places than the snapshot has
+    // cells is looked up place by place, and otherwise these go over all the cells.
+    @Override
+    public void forEachCellInRow(int row, Consumer<? super CellGetters> action) {
+
+        if (layout.getColumns() < cells.size()) {
+            for (int column = 0; column < layout.getColumns(); column++) {
+                acceptIfActive(CoordinateFactory.createCoordinate(row, column), action);
+            }
+            return;
+        }
+
+        cells.forEach(cell -> {
+            if (cell.getCoordinate().getRow() == row) {
+                action.accept(toCell(cell));
+            }
+        });
+    }
+
+    @Override
+    public void forEachCellInColumn(int column, Consumer<? super CellGetters> action) {
+
+        if (layout.getRows() < cells.size()) {
+            for (int row = 0; row < layout.getRows(); row++) {
+                acceptIfActive(CoordinateFactory.createCoordinate(row, column), action);
+            }
+            return;
+        }
+
+        cells.forEach(cell -> {
+            if (cell.getCoordinate().getCol() == column) {
+                action.accept(toCell(cell));
+            }
+        });
+    }
+
+    @Override
+    public Data getCellData(String cellId) {
+        return new DataImpl(DataType.UNKNOWN,1);
+    }
+
+    @Override
+    public RecalculationMode getRecalculationMode() {
+        return this.delta.getRecalculationMode();
+    }
+
+    // A cell that was dirty when the snapshot was taken is evaluated on its first read, from the cells of this
+    // snapshot. The cells it refers to that weren't evaluated yet come first, without recursing through the
+    // references. A cell's snapshot is taken again whenever a cell it depends on changes, so the value is the
+    // same in every version that shares it.
+    public Data effectiveValueOf(CellSnapshot cell) {
+
+        if (cell.isEvaluated()) {
+            return cell.getEffectiveValue();
+        }
+
+        SheetGetters sheetView = Ref.sheetView;
+        Ref.sheetView = this;
+
+        try {
+            Deque<CellSnapshot> path = new ArrayDeque<>();
+            Deque<ParsedExpression> pathExpressions = new ArrayDeque<>();
+            Deque<Iterator<Coordinate>> pathIterators = new ArrayDeque<>();
+            Set<CellSnapshot> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            visited.add(cell);
+            pushToPath(cell, path, pathExpressions, pathIterators);
+
+            while (!path.isEmpty()) {
+                if (pathIterators.peek().hasNext()) {
+                    CellSnapshot affectedBy = cells.get(pathIterators.peek().next());
+
+                    if (affectedBy != null && !affectedBy.isEvaluated() && visited.add(affectedBy)) {
+                        pushToPath(affectedBy, path, pathExpressions, pathIterators);
+                    }
+                }
+                else {
+                    pathIterators.pop();
+                    path.pop().setEffectiveValue(pathExpressions.pop().getExpression().evaluate());
+                }
+            }
+        } finally {
+            Ref.sheetView = sheetView;
+        }
+
+        return cell.getEffectiveValue();
+    }
+
+    private static void pushToPath(CellSnapshot cell, Deque<CellSnapshot> path, Deque<ParsedExpression> pathExpressions,
+                                   Deque<Iterator<Coordinate>> pathIterators) {
+
+        ParsedExpression parsedExpression = ExpressionParser.parse(cell.getOriginalValue());
+
+        path.push(cell);
+        pathExpressions.push(parsedExpression);
+        pathIterators.push(parsedExpression.getReferences().iterator());
+    }
+
+    // One pass over the cells of the snapshot finds the dependents of all of them.
+    private Map<Coordinate, List<CellSnapshot>> dependents() {
+
+        Map<Coordinate, List<CellSnapshot>> dependents = this.dependents;
+
+        if (dependents == null) {
+            Map<Coordinate, List<CellSnapshot>> referringCells = new HashMap<>();
+
+            for (CellSnapshot cell : cells) {
+                for (Coordinate reference : cell.getReferences()) {
+                    referringCells.computeIfAbsent(reference, coordinate -> new ArrayList<>()).add(cell);
+                }
+            }
+
+            this.dependents = dependents = referringCells;
+        }
+
+        return dependents;
+    }
+
+    private void acceptIfActive(Coordinate coordinate, Consumer<? super CellGetters> action) {
+
+        CellSnapshot cell = cells.get(coordinate);
+
+        if (cell != null) {
+            action.accept(toCell(cell));
+        }
+    }
+
+    private Cell toCell(CellSnapshot cell) {
+        return cell == null ? null : new SnapshotCell(cell);
+    }
+
+    // A cell of this version. The snapshot is shared with other versions, so the dependencies are found
+    // in this version when they're asked for.
+    private class SnapshotCell implements Cell {
+
+        private final CellSnapshot cell;
+
+        private SnapshotCell(CellSnapshot cell) {
+            this.cell = cell;
+        }
+
+        @Override
+        public Coordinate getCoordinate() {
+            return cell.getCoordinate();
+        }
+
+        @Override
+        public int getId() {
+            return -1;
+        }
+
+        @Override
+        public int getVersion() {
+            return cell.getVersion();
+        }
+
+        @Override
+        public String getOriginalValue() {
+            return cell.getOriginalValue();
+        }
+
+        @Override
+        public Data getEffectiveValue() {
+            return effectiveValueOf(cell);
+        }
+
+        @Override
+        public boolean isDirty() {
+            return false;
+        }
+
+        @Override
+        public Set<Cell> getInfluenceFrom() {
+
+            Set<Cell> influenceFrom = new HashSet<>();
+
+            for (Coordinate coordinate : getReferences()) {
+                influenceFrom.add(toCell(cells.get(coordinate)));
+            }
+
+            return Collections.unmodifiableSet(influenceFrom);
+        }
+
+        @Override
+        public Set<Coordinate> getReferences() {
+            return cell.getReferences();
+        }
+
+        @Override
+        public Set<Cell> getInfluenceOn() {
+
+            Set<Cell> influenceOn = new HashSet<>();
+
+            for (CellSnapshot dependent : dependents().getOrDefault(cell.getCoordinate(), List.of())) {
+                influenceOn.add(toCell(dependent));
+            }
+
+            return Collections.unmodifiableSet(influenceOn);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            SnapshotCell that = (SnapshotCell) o;
+            return cell == that.cell;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(cell);
+        }
+
+        @Override
+        public void computeEffectiveValue() {
+            throw new UnsupportedOperationException("A version cannot be changed");
+        }
+
+        @Override
+        public void markDirty(CellEvaluator evaluator) {
+            throw new UnsupportedOperationException("A version cannot be changed");
+        }
+
+        @Override
+        public void setOriginalValue(String originalValue) {
+            throw new UnsupportedOperationException("A version cannot be changed");
+        }
+
+        @Override
+        public void setInfluenceOn(Set<Cell> influenceOn) {
+            throw new UnsupportedOperationException("A version cannot be changed");
+        }
+
+        @Override
+        public void setInfluenceFrom(Set<Cell> influenceFrom) {
+            throw new UnsupportedOperationException("A version cannot be changed");
+        }
+
+        @Override
+        public void setVersion(int changeInVersion) {
+            throw new UnsupportedOperationException("A version cannot be changed");
+        }
+
+        @Override
+        public void setId(int id) {
+            throw new UnsupportedOperationException("A version cannot be changed");
+        }
+    }
+
+    private class CellsView extends AbstractMap<CoordinateGetters, CellGetters> {
+
+        @Override
+        public int size() {
+            return cells.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof CoordinateGetters coordinate && cells.get(coordinate) != null;
+        }
+
+        @Override
+        public CellGetters get(Object key) {
+            return key instanceof CoordinateGetters coordinate ? toCell(cells.get(coordinate)) : null;
+        }
+
+        @Override
+        public Set<Entry<CoordinateGetters, CellGetters>> entrySet() {
+            return new AbstractSet<>() {
+
+                @Override
+                public int size() {
+                    return cells.size();
+                }
+
+                @Override
+                public Iterator<Entry<CoordinateGetters, CellGetters>> iterator() {
+
+                    Iterator<CellSnapshot> snapshots = cells.iterator();
+
+                    return new Iterator<>() {
+
+                        @Override
+                        public boolean hasNext() {
+                            return snapshots.hasNext();
+                        }
+
+                        @Override
+                        public Entry<CoordinateGetters, CellGetters> next() {
+                            CellSnapshot cell = snapshots.next();
+                            return new SimpleImmutableEntry<>(cell.getCoordinate(), toCell(cell));
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package check;
+
+import sheet.api.Sheet;
+import sheet.api.SheetGetters;
+import sheet.cell.api.CellGetters;
+import sheet.coordinate.api.Coordinate;
+import sheet.coordinate.impl.CoordinateFactory;
+import sheet.impl.SheetImpl;
+import sheet.layout.api.LayoutGetters;
+import sheet.layout.impl.LayoutImpl;
+import sheet.layout.size.impl.SizeImpl;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+// The assertions of the checks under this directory, and the sheets and cells they share. A failed assertion throws
+// an AssertionError, which fails the check that made it.
+public class Check {
+
+    private Check() {}
+
+    public static void isTrue(boolean condition, String message) {
+
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    public static void equal(Object expected, Object actual, String message) {
+
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(message + ": expected <" + expected + "> but was <" + actual + ">");
+        }
+    }
+
+    // Runs the action and returns the exception it threw, which has to be of the given type.
+    public static <T extends Throwable> T fails(Class<T> type, ThrowingRunnable action, String message) {
+
+        try {
+            action.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e)) {
+                return type.cast(e);
+            }
+            throw new AssertionError(message + ": expected " + type.getSimpleName() + " but got " + e, e);
+        }
+
+        throw new AssertionError(message + ": expected " + type.getSimpleName() + " but nothing was thrown");
+    }
+
+    // Every cell of the expected sheet's layout has the same original value, effective value, version and dependents
+    // in the actual sheet, and a cell that's missing from one is missing from the other.
+    public static void sameCells(SheetGetters expected, SheetGetters actual, String message) {
+
+        equal(expected.getName(), actual.getName(), "the name of " + message);
+        equal(expected.getVersion(), actual.getVersion(), "the version of " + message);
+
+        LayoutGetters layout = expected.getLayout();
+
+        for (int row = 0; row < layout.getRows(); row++) {
+            for (int column = 0; column < layout.getColumns(); column++) {
+                Coordinate coordinate = cell(row, column);
+                CellGetters expectedCell = expected.getCell(coordinate);
+                CellGetters actualCell = actual.getCell(coordinate);
+                String cell = nameOf(coordinate) + " of " + message;
+
+                equal(expectedCell == null, actualCell == null, "whether there's a cell in " + cell);
+
+                if (expectedCell != null) {
+                    equal(expectedCell.getOriginalValue(), actualCell.getOriginalValue(), "the original value of " + cell);
+                    equal(expectedCell.getEffectiveValue().getValue(), actualCell.getEffectiveValue().getValue(),
+                            "the effective value of " + cell);
+                    equal(expectedCell.getVersion(), actualCell.getVersion(), "the version of " + cell);
+                    equal(coordinatesOf(expectedCell.getInfluenceOn()), coordinatesOf(actualCell.getInfluenceOn()),
+                            "the dependents of " + cell);
+                }
+            }
+        }
+    }
+
+    public static Sheet newSheet(String name, int rows, int columns) {
+        return SheetImpl.create(name, LayoutImpl.create(SizeImpl.create(10, 1), rows, columns));
+    }
+
+    public static Coordinate cell(int row, int column) {
+        return CoordinateFactory.createCoordinate(row, column);
+    }
+
+    public static String nameOf(Coordinate coordinate) {
+        return CoordinateFactory.parseIntToColumn(coordinate.getCol() + 1) + (coordinate.getRow() + 1);
+    }
+
+    private static Set<Coordinate> coordinatesOf(Set<? extends CellGetters> cells) {
+
+        Set<Coordinate> coordinates = new HashSet<>();
+        cells.forEach(cell -> coordinates.add(cell.getCoordinate()));
+
+        return coordinates;
+    }
+
+    public interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
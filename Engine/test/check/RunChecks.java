@@ -0,0 +1,49 @@
+package check;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+// Runs every check class and exits with a failure if any of them failed. A check class is a class with a main
+// method next to the classes it checks, so it can also be run on its own.
+public class RunChecks {
+
+    private static final List<String> CHECKS = List.of(
+            "sheet.impl.LongChainCheck",
+            "sheet.impl.CircleMessageCheck",
+            "sheet.impl.RankOverflowCheck",
+            "sheet.impl.LazyModeCheck",
+            "engine.version.manager.impl.VersionCompactionCheck",
+            "engine.impl.BinaryFileCheck",
+            "sheet.impl.MappedSheetCheck",
+            "engine.impl.JournalCheck",
+            "engine.impl.RecalculationModeCheck",
+            "engine.impl.VersionRetentionCheck",
+            "engine.csv.CSVCheck",
+            "engine.jaxb.parser.STLSheetStreamWriterCheck",
+            "expression.parser.ExpressionParserCheck");
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+
+        int failed = 0;
+
+        for (String check : args.length > 0 ? List.of(args) : CHECKS) {
+            Method main = Class.forName(check).getMethod("main", String[].class);
+            long start = System.nanoTime();
+
+            try {
+                main.invoke(null, (Object) new String[0]);
+                System.out.printf("PASS %s (%d ms)%n", check, (System.nanoTime() - start) / 1_000_000);
+            } catch (InvocationTargetException e) {
+                failed++;
+                System.out.println("FAIL " + check);
+                e.getTargetException().printStackTrace(System.out);
+            }
+        }
+
+        if (failed > 0) {
+            System.out.println(failed + " of the checks failed");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package engine.csv;
+
+import check.Check;
+import sheet.api.Sheet;
+import sheet.cell.api.Cell;
+import sheet.coordinate.api.Coordinate;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Reading the records of CSV and TSV text, whatever it ends with, and writing records that read back the same, by
+// themselves and as the cells of a sheet.
+public class CSVCheck {
+
+    public static void main(String[] args) throws IOException {
+        checkEndings();
+        checkQuotedFields();
+        checkRecordsRoundTrip(',');
+        checkRecordsRoundTrip('\t');
+        checkSheetRoundTrip(',', ".csv");
+        checkSheetRoundTrip('\t', ".tsv");
+    }
+
+    private static void checkEndings() throws IOException {
+
+        Check.equal(List.of(), read("", ','), "an empty file");
+        Check.equal(List.of(List.of("x")), read("x", ','), "a single field without a line break");
+        Check.equal(List.of(List.of("a", "b"), List.of("c", "d")), read("a,b\nc,d", ','), "no line break at the end");
+        Check.equal(List.of(List.of("a", "b"), List.of("c", "d")), read("a,b\nc,d\n", ','), "a line break at the end");
+        Check.equal(List.of(List.of("a", "b"), List.of("c", "d")), read("a,b\r\nc,d\r\n", ','), "CRLF line breaks");
+        Check.equal(List.of(List.of("a", "b"), List.of("c", "d")), read("a,b\r\nc,d", ','), "CRLF without one at the end");
+        Check.equal(List.of(List.of("a"), List.of("b")), read("a\rb\r", ','), "CR line breaks");
+        Check.equal(List.of(List.of("a", ""), List.of(""), List.of("b")), read("a,\n\nb", ','), "empty fields and lines");
+        Check.equal(List.of(List.of("a", "b")), read("\uFEFFa,b", ','), "a byte order mark");
+        Check.equal(List.of(List.of("a,b", "c")), read("a,b\tc", '\t'), "a comma in TSV");
+    }
+
+    private static void checkQuotedFields() throws IOException {
+
+        Check.equal(List.of(List.of("x\ny", "q\"q"), List.of("z")), read("\"x\ny\",\"q\"\"q\"\nz", ','),
+                "a quoted line break and quote");
+        Check.equal(List.of(List.of("x\r\ny", "")), read("\"x\r\ny\",\"\"", ','), "a quoted CRLF and an empty quoted field");
+        Check.equal(List.of(List.of("a,b")), read("\"a,b\"", ','), "a quoted field at the end of the file");
+        Check.equal(List.of(List.of("a\tb", "c")), read("\"a\tb\"\tc\r\n", '\t'), "a quoted tab in TSV");
+
+        IOException failure = Check.fails(IOException.class, () -> read("a\n\"b\nc", ','), "an unclosed quote");
+        Check.isTrue(failure.getMessage().contains("line 2"), "the unclosed quote is reported at its line: "
+                + failure.getMessage());
+    }
+
+    // Random fields with delimiters, quotes and line breaks, over more than one buffer of the reader.
+    private static void checkRecordsRoundTrip(char delimiter) throws IOException {
+
+        Random random = new Random(delimiter);
+        List<List<String>> records = new ArrayList<>();
+        String[] pieces = { "a", "bc", "1.5", " ", "\"", "\n", "\r\n", "\r", ",", "\t", "{REF,A1}", "\u00e9t\u00e9" };
+
+        for (int count = 0; count < 5_000; count++) {
+            List<String> record = new ArrayList<>();
+
+            for (int fields = 1 + random.nextInt(6); fields > 0; fields--) {
+                StringBuilder field = new StringBuilder();
+
+                for (int length = random.nextInt(5); length > 0; length--) {
+                    field.append(pieces[random.nextInt(pieces.length)]);
+                }
+                record.add(field.toString());
+            }
+            records.add(record);
+        }
+
+        for (boolean lastLineBreak : new boolean[] { true, false }) {
+            String text = write(records, delimiter);
+            text = lastLineBreak ? text : text.substring(0, text.length() - 1);
+
+            Check.isTrue(text.length() > 64 * 1024, "the records take more than a buffer");
+            Check.equal(records, read(text, delimiter),
+                    "the records read back with" + (lastLineBreak ? "" : "out") + " a line break at the end");
+        }
+    }
+
+    private static void checkSheetRoundTrip(char delimiter, String suffix) throws IOException {
+
+        Sheet sheet = Check.newSheet("csv", 4, 3);
+        Map<Coordinate, String> cells = new HashMap<>();
+        cells.put(Check.cell(0, 0), "1");
+        cells.put(Check.cell(0, 2), "text, with a comma");
+        cells.put(Check.cell(1, 1), "{PLUS,{REF,A1},2}");
+        cells.put(Check.cell(2, 0), "two\nlines");
+        cells.put(Check.cell(3, 2), "\"quoted\"\tand tabbed");
+        sheet.setCells(cells);
+
+        Path file = Files.createTempFile("csv-check", suffix);
+
+        try {
+            CSVSheetWriter.write(sheet, file, delimiter, true);
+            Sheet read = CSVSheetLoader.load(file, delimiter, layout -> true);
+
+            Check.equal(4, read.getLayout().getRows(), "the rows of the sheet read from " + suffix);
+            Check.equal(3, read.getLayout().getColumns(), "the columns of the sheet read from " + suffix);
+
+            for (int row = 0; row < 4; row++) {
+                for (int column = 0; column < 3; column++) {
+                    Cell cell = read.getCell(Check.cell(row, column));
+                    Check.equal(cells.get(Check.cell(row, column)), cell == null ? null : cell.getOriginalValue(),
+                            "the cell at " + row + "," + column + " read from " + suffix);
+                }
+            }
+
+            Check.equal(3.0, read.getCell(Check.cell(1, 1)).getEffectiveValue().getValue(), "the formula read from " + suffix);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<List<String>> read(String text, char delimiter) throws IOException {
+
+        List<List<String>> records = new ArrayList<>();
+
+        try (CSVReader reader = CSVReader.create(new StringReader(text), delimiter)) {
+            for (List<String> record = reader.readRecord(); record != null; record = reader.readRecord()) {
+                records.add(record);
+            }
+        }
+
+        return records;
+    }
+
+    private static String write(List<List<String>> records, char delimiter) throws IOException {
+
+        StringWriter text = new StringWriter();
+
+        try (CSVWriter writer = CSVWriter.create(text, delimiter)) {
+            for (List<String> record : records) {
+                writer.writeRecord(record.toArray(new String[0]), record.size());
+            }
+        }
+
+        return text.toString();
+    }
+}
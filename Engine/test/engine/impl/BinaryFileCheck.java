@@ -0,0 +1,132 @@
+package engine.impl;
+
+import check.Check;
+import engine.api.Engine;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// A binary file reads back every version, and the undo and redo edits. A file whose versions don't replay fails to
+// read and leaves the engine as it was.
+public class BinaryFileCheck {
+
+    private static final String XML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <STL-Sheet name="binary">
+                <STL-Layout rows="5" columns="5">
+                    <STL-Size column-width-units="10" rows-height-units="1"/>
+                </STL-Layout>
+                <STL-Cells>
+                    <STL-Cell row="1" column="A"><STL-Original-Value>1</STL-Original-Value></STL-Cell>
+                    <STL-Cell row="2" column="A"><STL-Original-Value>{PLUS,{REF,A1},1}</STL-Original-Value></STL-Cell>
+                    <STL-Cell row="1" column="B"><STL-Original-Value>text</STL-Original-Value></STL-Cell>
+                </STL-Cells>
+            </STL-Sheet>
+            """;
+
+    public static void main(String[] args) throws IOException {
+
+        Path directory = Files.createTempDirectory("binary-check");
+
+        try {
+            checkRoundTrip(directory);
+            checkReplayFailure(directory);
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void checkRoundTrip(Path directory) {
+
+        Engine engine = newEngine(directory);
+        engine.updateCellStatus("A1", "5");
+        engine.updateCellStatus("A3", "{TIMES,{REF,A2},2}");
+        engine.updateCellStatus("B1", "");
+        engine.undo();
+        engine.redo();
+        engine.undo();
+
+        String binaryFile = directory.resolve("sheet.bin").toString();
+        engine.writeBinaryFile(binaryFile);
+
+        Engine read = EngineImpl.create();
+        read.readBinaryFile(binaryFile);
+
+        int versions = engine.getVersionsManagerStatus().getVersions().size();
+        Check.equal(versions, read.getVersionsManagerStatus().getVersions().size(), "the number of versions");
+
+        for (int index = 0; index < versions; index++) {
+            Check.sameCells(engine.getVersionsManagerStatus().getVersions().get(index),
+                    read.getVersionsManagerStatus().getVersions().get(index), "version at " + index);
+        }
+
+        Check.sameCells(engine.getSheetStatus(), read.getSheetStatus(), "the sheet");
+        Check.equal(engine.canUndo(), read.canUndo(), "can undo");
+        Check.equal(engine.canRedo(), read.canRedo(), "can redo");
+
+        // The redo edit is read too, so redoing in both gives the same sheet.
+        engine.redo();
+        read.redo();
+        Check.sameCells(engine.getSheetStatus(), read.getSheetStatus(), "the sheet after redo");
+        Check.equal("", read.getCellStatus("B1").getOriginalValue(), "B1 after redo");
+
+        engine.exit();
+        read.exit();
+    }
+
+    // A1 refers to B5 in the file. Rewriting the reference to A1 keeps the file readable, but the edit that
+    // replays it is a circle.
+    private static void checkReplayFailure(Path directory) throws IOException {
+
+        Engine engine = newEngine(directory);
+        engine.updateCellStatus("A1", "{REF,B5}");
+
+        Path binaryFile = directory.resolve("circle.bin");
+        engine.writeBinaryFile(binaryFile.toString());
+        engine.exit();
+
+        byte[] bytes = Files.readAllBytes(binaryFile);
+        String content = new String(bytes, StandardCharsets.ISO_8859_1);
+        int reference = content.indexOf("{REF,B5}");
+        Check.isTrue(reference >= 0, "the file holds the reference");
+        bytes[reference + 5] = 'A';
+        bytes[reference + 6] = '1';
+        Files.write(binaryFile, bytes);
+
+        Engine target = newEngine(directory);
+        target.updateCellStatus("C3", "kept");
+
+        RuntimeException failure = Check.fails(RuntimeException.class,
+                () -> target.readBinaryFile(binaryFile.toString()), "reading the circle");
+        Check.isTrue(failure.getCause() instanceof StreamCorruptedException,
+                "the failure is a format error, but its cause was " + failure.getCause());
+        Check.equal("kept", target.getCellStatus("C3").getOriginalValue(), "C3 after the failed read");
+        Check.equal(2, target.getVersionsManagerStatus().getVersions().size(), "the versions after the failed read");
+
+        target.exit();
+    }
+
+    private static Engine newEngine(Path directory) {
+
+        try {
+            Path xmlFile = directory.resolve("sheet.xml");
+            Files.writeString(xmlFile, XML);
+
+            Engine engine = EngineImpl.create();
+            engine.readXMLInitFile(xmlFile.toString());
+
+            return engine;
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write " + directory.resolve("sheet.xml"), e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package engine.impl;
+
+import check.Check;
+import engine.api.Engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// An engine that stops without writing its binary file again is recovered from the binary file and its journal.
+// The engines that "crash" here are just dropped, once the journal had the time to sync their edits.
+public class JournalCheck {
+
+    private static final String XML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <STL-Sheet name="%s">
+                <STL-Layout rows="5" columns="5">
+                    <STL-Size column-width-units="10" rows-height-units="1"/>
+                </STL-Layout>
+                <STL-Cells>
+                    <STL-Cell row="1" column="A"><STL-Original-Value>1</STL-Original-Value></STL-Cell>
+                    <STL-Cell row="2" column="A"><STL-Original-Value>{PLUS,{REF,A1},1}</STL-Original-Value></STL-Cell>
+                </STL-Cells>
+            </STL-Sheet>
+            """;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        Path directory = Files.createTempDirectory("journal-check");
+
+        try {
+            checkRecovery(directory);
+            checkStartOverOldJournal(directory);
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    // Edits before and after the binary file is written again, with undo and redo among them.
+    private static void checkRecovery(Path directory) throws IOException, InterruptedException {
+
+        String binaryFile = directory.resolve("recovery.bin").toString();
+        Engine engine = newEngine(directory, "recovery");
+        engine.startJournal(binaryFile);
+
+        engine.updateCellStatus("A1", "10");
+        engine.updateCellStatus("B1", "{TIMES,{REF,A2},3}");
+        crashAndCheckRecovery(engine, binaryFile, "after the first edits");
+
+        engine.writeBinaryFile(binaryFile);
+        Check.equal(0L, Files.size(Path.of(binaryFile + ".journal")), "the size of the journal after writing the binary file");
+        crashAndCheckRecovery(engine, binaryFile, "right after writing the binary file");
+
+        engine.undo();
+        engine.updateCellStatus("C1", "text");
+        engine.undo();
+        engine.redo();
+        crashAndCheckRecovery(engine, binaryFile, "after undo and redo");
+
+        engine.exit();
+        checkNoTemporaryFiles(directory);
+    }
+
+    // The journal of another sheet is left at the path. Starting a journal there empties it before the binary file
+    // is replaced, so recovering gives the new sheet.
+    private static void checkStartOverOldJournal(Path directory) throws IOException, InterruptedException {
+
+        String binaryFile = directory.resolve("reused.bin").toString();
+        Engine old = newEngine(directory, "old");
+        old.startJournal(binaryFile);
+        old.updateCellStatus("A1", "100");
+        old.updateCellStatus("A1", "200");
+        Thread.sleep(100);
+        Check.isTrue(Files.size(Path.of(binaryFile + ".journal")) > 0, "the old journal holds its edits");
+
+        Engine engine = newEngine(directory, "new");
+        engine.startJournal(binaryFile);
+        Check.equal(0L, Files.size(Path.of(binaryFile + ".journal")), "the size of the journal once it's started again");
+
+        crashAndCheckRecovery(engine, binaryFile, "the new sheet over the old journal");
+
+        old.exit();
+        engine.exit();
+        checkNoTemporaryFiles(directory);
+    }
+
+    private static void crashAndCheckRecovery(Engine engine, String binaryFile, String message) throws InterruptedException {
+
+        Thread.sleep(100);
+
+        Engine recovered = EngineImpl.create();
+        recovered.recoverBinaryFile(binaryFile);
+
+        Check.sameCells(engine.getSheetStatus(), recovered.getSheetStatus(), "the recovered sheet " + message);
+        Check.equal(engine.getVersionsManagerStatus().getVersions().size(),
+                recovered.getVersionsManagerStatus().getVersions().size(), "the number of versions " + message);
+        Check.equal(engine.canUndo(), recovered.canUndo(), "can undo " + message);
+        Check.equal(engine.canRedo(), recovered.canRedo(), "can redo " + message);
+
+        // The recovered engine keeps the journal open, so it's closed before the next one reads it.
+        recovered.exit();
+    }
+
+    private static void checkNoTemporaryFiles(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            List<Path> temporaryFiles = files.filter(file -> file.toString().endsWith(".tmp")).toList();
+            Check.isTrue(temporaryFiles.isEmpty(), "temporary files were left behind: " + temporaryFiles);
+        }
+    }
+
+    private static Engine newEngine(Path directory, String name) throws IOException {
+
+        Path xmlFile = directory.resolve(name + ".xml");
+        Files.writeString(xmlFile, XML.formatted(name));
+
+        Engine engine = EngineImpl.create();
+        engine.readXMLInitFile(xmlFile.toString());
+
+        return engine;
+    }
+}
@@ -0,0 +1,121 @@
+package engine.impl;
+
+import check.Check;
+import engine.api.Engine;
+import sheet.api.RecalculationMode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+// An engine set to the parallel or the lazy mode gives the same sheet and versions as an engine in the sequential
+// mode, and keeps its mode through the binary file.
+// Every cell of a row depends on the cell above it and on the first cell of the row above, so an edit of A1 makes
+// each row a level of the recalculation, wide enough to run in the pool.
+public class RecalculationModeCheck {
+
+    private static final int ROWS = 30;
+    private static final int COLUMNS = 100;
+
+    public static void main(String[] args) throws IOException {
+
+        checkNoSheet();
+
+        Path file = Files.createTempFile("recalculation-check", ".tsv");
+        Path binaryFile = Files.createTempFile("recalculation-check", ".bin");
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            Files.writeString(file, grid());
+            checkSameResults(file.toString(), binaryFile.toString(), RecalculationMode.PARALLEL, pool);
+            checkSameResults(file.toString(), binaryFile.toString(), RecalculationMode.LAZY, pool);
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+            Files.delete(binaryFile);
+        }
+    }
+
+    private static void checkNoSheet() {
+
+        Engine engine = EngineImpl.create();
+        Check.fails(IllegalStateException.class, () -> engine.setRecalculationMode(RecalculationMode.PARALLEL),
+                "setting the mode before a sheet is loaded");
+        engine.exit();
+    }
+
+    private static void checkSameResults(String file, String binaryFile, RecalculationMode mode, ForkJoinPool pool) {
+
+        Engine sequential = EngineImpl.create();
+        sequential.readCSVFile(file);
+        sequential.setRecalculationMode(RecalculationMode.SEQUENTIAL);
+
+        Engine engine = EngineImpl.create();
+        engine.setRecalculationPool(pool);
+        engine.readCSVFile(file);
+        engine.setRecalculationMode(mode);
+        Check.equal(mode, engine.getSheetStatus().getRecalculationMode(), "the mode of the sheet");
+
+        String message = "the sheet in the " + mode + " mode";
+        Check.sameCells(sequential.getSheetStatus(), engine.getSheetStatus(), message + " once it's loaded");
+
+        for (String value : new String[] {"5", "-2.5", "{TIMES,{REF,B1},3}"}) {
+            sequential.updateCellStatus("A1", value);
+            engine.updateCellStatus("A1", value);
+            Check.equal(mode == RecalculationMode.LAZY, engine.getCellStatus(ROWS - 1, COLUMNS - 1).isDirty(),
+                    "whether the last cell waits to be read in " + message);
+            Check.sameCells(sequential.getSheetStatus(), engine.getSheetStatus(), message + " with A1 " + value);
+        }
+
+        sequential.updateCellStatus("C2", "{MINUS,{REF,C1},{REF,D1}}");
+        engine.updateCellStatus("C2", "{MINUS,{REF,C1},{REF,D1}}");
+        Check.sameCells(sequential.getSheetStatus(), engine.getSheetStatus(), message + " with C2 edited");
+
+        sequential.undo();
+        engine.undo();
+        Check.sameCells(sequential.getSheetStatus(), engine.getSheetStatus(), message + " after undo");
+
+        int versions = sequential.getVersionsManagerStatus().getVersions().size();
+        Check.equal(versions, engine.getVersionsManagerStatus().getVersions().size(), "the number of versions");
+
+        for (int index = 0; index < versions; index++) {
+            Check.sameCells(sequential.getVersionsManagerStatus().getVersions().get(index),
+                    engine.getVersionsManagerStatus().getVersions().get(index), "version at " + index + " of " + message);
+        }
+
+        engine.writeBinaryFile(binaryFile);
+        Engine read = EngineImpl.create();
+        read.readBinaryFile(binaryFile);
+        Check.equal(mode, read.getSheetStatus().getRecalculationMode(), "the mode of the sheet read back");
+        Check.sameCells(sequential.getSheetStatus(), read.getSheetStatus(), message + " read back");
+
+        sequential.exit();
+        engine.exit();
+        read.exit();
+    }
+
+    private static String grid() {
+
+        StringBuilder grid = new StringBuilder();
+
+        for (int row = 1; row <= ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                if (column > 0) {
+                    grid.append('\t');
+                }
+
+                if (row == 1) {
+                    grid.append(column + 1);
+                }
+                else {
+                    String above = Check.nameOf(Check.cell(row - 2, column));
+                    grid.append("{PLUS,{REF,").append(above).append("},{REF,A").append(row - 1).append("}}");
+                }
+            }
+            grid.append('\n');
+        }
+
+        return grid.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package engine.impl;
+
+import check.Check;
+import engine.api.Engine;
+import engine.version.manager.api.RetentionPolicy;
+import engine.version.manager.api.VersionInfo;
+import sheet.api.SheetGetters;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// The engine keeps a bounded history unless it's told otherwise. A policy set through the engine drops the versions
+// it doesn't keep, while undo still goes back past them, and the binary file keeps the policy.
+public class VersionRetentionCheck {
+
+    private static final int EDITS = 20;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        Path file = Files.createTempFile("retention-check", ".csv");
+        Path binaryFile = Files.createTempFile("retention-check", ".bin");
+
+        try {
+            Files.writeString(file, "0\n");
+            checkDefaultPolicy();
+            checkDroppedVersions(file.toString(), binaryFile.toString());
+        } finally {
+            Files.delete(file);
+            Files.delete(binaryFile);
+        }
+    }
+
+    private static void checkDefaultPolicy() {
+
+        Engine engine = EngineImpl.create();
+        RetentionPolicy retentionPolicy = engine.getVersionsManagerStatus().getRetentionPolicy();
+
+        Check.isTrue(retentionPolicy.getKeepLast() < Integer.MAX_VALUE, "the default policy bounds the versions");
+        Check.isTrue(retentionPolicy.getMaxBytes() < Long.MAX_VALUE, "the default policy bounds the bytes");
+        Check.fails(IllegalArgumentException.class, () -> engine.setRetentionPolicy(0, 1, 0), "keeping no versions");
+
+        engine.exit();
+    }
+
+    private static void checkDroppedVersions(String file, String binaryFile) throws InterruptedException {
+
+        Engine engine = EngineImpl.create();
+        engine.readCSVFile(file);
+
+        for (int edit = 1; edit <= EDITS; edit++) {
+            engine.updateCellStatus("A1", Integer.toString(edit));
+        }
+
+        engine.setRetentionPolicy(3, 1, 0);
+        awaitVersions(engine, 3);
+
+        for (VersionInfo info : engine.getVersionsManagerStatus().getVersionInfos()) {
+            SheetGetters version = engine.getVersionsManagerStatus().getVersion(info.getVersion());
+            Check.equal(Integer.toString(info.getVersion() - 1), version.getCell(Check.cell(0, 0)).getOriginalValue(),
+                    "A1 of the kept version " + info.getVersion());
+        }
+
+        engine.writeBinaryFile(binaryFile);
+        Engine read = EngineImpl.create();
+        read.readBinaryFile(binaryFile);
+        Check.equal(3, read.getVersionsManagerStatus().getRetentionPolicy().getKeepLast(), "the policy read back");
+        Check.equal(3, read.getVersionsManagerStatus().getVersionInfos().size(), "the versions read back");
+
+        for (int undo = 0; undo < EDITS / 2; undo++) {
+            engine.undo();
+        }
+        Check.equal(Integer.toString(EDITS / 2), engine.getCellStatus("A1").getOriginalValue(),
+                "A1 after undoing past the kept versions");
+
+        engine.exit();
+        read.exit();
+    }
+
+    private static void awaitVersions(Engine engine, int versions) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 10_000;
+
+        while (engine.getVersionsManagerStatus().getVersionInfos().size() > versions) {
+            Check.isTrue(System.currentTimeMillis() < deadline, "the versions were dropped within 10 seconds");
+            Thread.sleep(10);
+        }
+    }
+}
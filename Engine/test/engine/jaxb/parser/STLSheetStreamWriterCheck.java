@@ -0,0 +1,131 @@
+package engine.jaxb.parser;
+
+import check.Check;
+import engine.impl.EngineImpl;
+import sheet.api.Sheet;
+import sheet.api.SheetGetters;
+import sheet.cell.api.Cell;
+import sheet.coordinate.api.Coordinate;
+import sheet.impl.SheetImpl;
+import sheet.layout.impl.LayoutImpl;
+import sheet.layout.size.impl.SizeImpl;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+// A sheet written as an STL sheet file reads back with the same name, layout and original values, whatever
+// characters the values hold, and so does any version written by the engine.
+public class STLSheetStreamWriterCheck {
+
+    public static void main(String[] args) throws XMLStreamException, IOException {
+        checkRoundTrip();
+        checkControlCharacter();
+        checkVersionRoundTrip();
+    }
+
+    private static void checkRoundTrip() throws XMLStreamException {
+
+        Sheet sheet = SheetImpl.create("round <trip> & \"more\"", LayoutImpl.create(SizeImpl.create(12, 2), 40, 30));
+        Map<Coordinate, String> cells = new HashMap<>();
+
+        cells.put(Check.cell(0, 0), "1");
+        cells.put(Check.cell(0, 29), "<tag attribute=\"value\"> & 'quotes'");
+        cells.put(Check.cell(1, 1), "{PLUS,{REF,A1},2}");
+        cells.put(Check.cell(5, 3), "  leading and trailing spaces  ");
+        cells.put(Check.cell(6, 3), "line\nbreak, carriage\rreturn and\r\nboth");
+        cells.put(Check.cell(7, 3), "\tindented");
+        cells.put(Check.cell(39, 0), "\u05e9\u05dc\u05d5\u05dd \u00e9t\u00e9 \uD83D\uDE00");
+        cells.put(Check.cell(39, 29), "]]> and <![CDATA[");
+        sheet.setCells(cells);
+
+        Sheet read = writeAndRead(sheet);
+
+        Check.equal(sheet.getName(), read.getName(), "the name");
+        Check.equal(40, read.getLayout().getRows(), "the rows");
+        Check.equal(30, read.getLayout().getColumns(), "the columns");
+        Check.equal(12, read.getLayout().getSize().getWidth(), "the column width");
+        Check.equal(2, read.getLayout().getSize().getHeight(), "the row height");
+        checkSameOriginalValues(sheet, read, "the sheet read back");
+        Check.equal(3.0, read.getCell(Check.cell(1, 1)).getEffectiveValue().getValue(), "the formula read back");
+    }
+
+    // XML 1.0 can't hold a control character other than a tab or a line break, so the export fails.
+    private static void checkControlCharacter() {
+
+        Sheet sheet = Check.newSheet("control", 2, 2);
+        sheet.setCells(Map.of(Check.cell(0, 0), "bell\u0007"));
+
+        Check.fails(XMLStreamException.class, () -> STLSheetStreamWriter.write(sheet, new ByteArrayOutputStream()),
+                "writing a control character");
+    }
+
+    // An older version of an edited sheet, through the files of the engine.
+    private static void checkVersionRoundTrip() throws IOException {
+
+        Path directory = Files.createTempDirectory("xml-check");
+        Path first = directory.resolve("first.xml");
+        Path second = directory.resolve("second.xml");
+
+        try {
+            Sheet sheet = Check.newSheet("versions", 3, 3);
+            sheet.setCells(Map.of(Check.cell(0, 0), "1", Check.cell(0, 1), "{TIMES,{REF,A1},3}"));
+
+            try (var out = Files.newOutputStream(first)) {
+                STLSheetStreamWriter.write(sheet, out);
+            } catch (XMLStreamException e) {
+                throw new RuntimeException("Failed to write " + first, e);
+            }
+
+            EngineImpl engine = EngineImpl.create();
+            engine.readXMLInitFile(first.toString());
+            int firstVersion = engine.getSheetStatus().getVersion();
+            engine.updateCellStatus("A1", "5");
+            engine.updateCellStatus("C3", "new");
+
+            engine.writeXMLFile(second.toString(), firstVersion);
+
+            EngineImpl read = EngineImpl.create();
+            read.readXMLInitFile(second.toString());
+            checkSameOriginalValues(engine.getVersionsManagerStatus().getVersion(firstVersion), read.getSheetStatus(),
+                    "the first version read back");
+            Check.equal(3.0, read.getCellStatus("B1").getEffectiveValue().getValue(), "B1 of the first version");
+
+            engine.exit();
+            read.exit();
+        } finally {
+            Files.deleteIfExists(first);
+            Files.deleteIfExists(second);
+            Files.delete(directory);
+        }
+    }
+
+    private static Sheet writeAndRead(SheetGetters sheet) throws XMLStreamException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        STLSheetStreamWriter.write(sheet, bytes);
+
+        return STLSheetStreamLoader.load(new ByteArrayInputStream(bytes.toByteArray()), layout -> true);
+    }
+
+    private static void checkSameOriginalValues(SheetGetters expected, SheetGetters actual, String message) {
+
+        Check.equal(expected.getActiveCells().size(), actual.getActiveCells().size(), "the number of cells of " + message);
+
+        for (int row = 0; row < expected.getLayout().getRows(); row++) {
+            for (int column = 0; column < expected.getLayout().getColumns(); column++) {
+                Cell expectedCell = expected.getCell(Check.cell(row, column));
+                Cell actualCell = actual.getCell(Check.cell(row, column));
+
+                Check.equal(expectedCell == null ? null : expectedCell.getOriginalValue(),
+                        actualCell == null ? null : actualCell.getOriginalValue(),
+                        "the cell at " + row + "," + column + " of " + message);
+            }
+        }
+    }
+}
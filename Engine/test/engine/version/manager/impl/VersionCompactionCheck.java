@@ -0,0 +1,200 @@
+package engine.version.manager.impl;
+
+import check.Check;
+import engine.version.manager.api.VersionInfo;
+import sheet.api.RecalculationMode;
+import sheet.api.Sheet;
+import sheet.coordinate.api.Coordinate;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+// The compactor drops versions while new ones are added. The versions it keeps still read the values they had,
+// and the store doesn't keep the records of the dropped versions.
+public class VersionCompactionCheck {
+
+    private static final int ROWS = 50;
+    private static final int VERSIONS = 2_000;
+
+    public static void main(String[] args) throws InterruptedException, ReflectiveOperationException {
+        checkStoreIsReclaimed();
+        checkKeptVersionsWhileCompacting();
+        checkClose();
+        checkCompactionFailure();
+    }
+
+    // Every delta goes to the store and only the last three versions are kept, so without reclaiming the store
+    // would end up with the deltas of all the versions, more than 10MB.
+    private static void checkStoreIsReclaimed() throws InterruptedException {
+
+        Sheet sheet = newSheet();
+        VersionManagerImpl versionManager = VersionManagerImpl.create();
+        versionManager.setHeapBudget(0);
+        versionManager.setRetentionPolicy(RetentionPolicyImpl.create(3, 1, 0));
+
+        for (int version = 1; version <= VERSIONS; version++) {
+            editAll(sheet, version);
+            versionManager.addVersion(sheet);
+        }
+
+        awaitCompaction(versionManager);
+
+        Check.equal(3, versionManager.getVersionInfos().size(), "the number of versions kept");
+        Check.isTrue(versionManager.getStoreSize() < 3 * 1024 * 1024,
+                "the store holds only the kept versions, but it takes " + versionManager.getStoreSize() + " bytes");
+
+        for (VersionInfo info : versionManager.getVersionInfos()) {
+            checkVersion(versionManager, info.getVersion());
+        }
+
+        versionManager.close();
+    }
+
+    // Every version that is a multiple of 10 is kept, and the last 20. They are read while the compactor works.
+    private static void checkKeptVersionsWhileCompacting() throws InterruptedException {
+
+        Sheet sheet = newSheet();
+        VersionManagerImpl versionManager = VersionManagerImpl.create();
+        versionManager.setHeapBudget(64 * 1024);
+        versionManager.setRetentionPolicy(RetentionPolicyImpl.create(20, 10, Long.MAX_VALUE));
+
+        for (int version = 1; version <= VERSIONS; version++) {
+            editAll(sheet, version);
+            versionManager.addVersion(sheet);
+
+            if (version % 100 == 0) {
+                checkVersion(versionManager, versionManager.getVersionInfos().getLast().getVersion());
+            }
+        }
+
+        awaitCompaction(versionManager);
+
+        for (VersionInfo info : versionManager.getVersionInfos()) {
+            int version = info.getVersion();
+            Check.isTrue(version % 10 == 0 || version > VERSIONS - 20, "version " + version + " was kept");
+            checkVersion(versionManager, version);
+        }
+
+        Check.equal(VERSIONS / 10 + 18, versionManager.getVersionInfos().size(), "the number of versions kept");
+        versionManager.close();
+    }
+
+    // Closing stops the compactor thread and deletes the store, even while the compactor is still dropping.
+    private static void checkClose() throws InterruptedException {
+
+        long compactorsBefore = runningCompactors();
+        Sheet sheet = newSheet();
+        VersionManagerImpl versionManager = VersionManagerImpl.create();
+        versionManager.setHeapBudget(0);
+        versionManager.setRetentionPolicy(RetentionPolicyImpl.create(1, 1, 0));
+
+        for (int version = 1; version <= 200; version++) {
+            editAll(sheet, version);
+            versionManager.addVersion(sheet);
+        }
+
+        Check.isTrue(versionManager.getStoreSize() > 0, "the versions went to the store");
+        versionManager.close();
+
+        Check.equal(0L, versionManager.getStoreSize(), "the size of the store after closing");
+        Check.isTrue(versionManager.getVersionInfos().isEmpty(), "no versions are left after closing");
+
+        long deadline = System.currentTimeMillis() + 10_000;
+
+        while (runningCompactors() > compactorsBefore) {
+            Check.isTrue(System.currentTimeMillis() < deadline, "the compactor thread stopped within 10 seconds");
+            Thread.sleep(10);
+        }
+    }
+
+    // The store is emptied behind the manager's back, so dropping a version fails to read its delta. The failure is
+    // reported by the next version, and the compaction isn't tried again until the versions are cleared.
+    private static void checkCompactionFailure() throws InterruptedException, ReflectiveOperationException {
+
+        Sheet sheet = newSheet();
+        VersionManagerImpl versionManager = VersionManagerImpl.create();
+        versionManager.setHeapBudget(0);
+
+        for (int version = 1; version <= 10; version++) {
+            editAll(sheet, version);
+            versionManager.addVersion(sheet);
+        }
+
+        Field versionStore = VersionManagerImpl.class.getDeclaredField("versionStore");
+        versionStore.setAccessible(true);
+        ((VersionStore) versionStore.get(versionManager)).clear();
+
+        versionManager.setRetentionPolicy(RetentionPolicyImpl.create(1, 1, 0));
+        awaitCompaction(versionManager);
+
+        editAll(sheet, 11);
+        RuntimeException failure = Check.fails(RuntimeException.class, () -> versionManager.addVersion(sheet),
+                "adding a version after the compaction failed");
+        Check.equal("Failed to compact versions", failure.getMessage(), "the message of the failure");
+        Check.fails(RuntimeException.class, () -> versionManager.increaseVersion(sheet),
+                "increasing the version after the compaction failed");
+        Check.equal(10, versionManager.getVersionInfos().size(), "the versions after the failed compaction");
+
+        versionManager.setRetentionPolicy(RetentionPolicyImpl.create(2, 1, 0));
+        Check.isTrue(!versionManager.isCompacting(), "the failed compaction isn't scheduled again");
+
+        versionManager.clearVersions();
+        versionManager.addVersion(sheet);
+        Check.equal(1, versionManager.getVersionInfos().size(), "the versions once they're cleared");
+        versionManager.close();
+    }
+
+    private static long runningCompactors() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("version-compactor") && thread.isAlive())
+                .count();
+    }
+
+    private static Sheet newSheet() {
+
+        Sheet sheet = Check.newSheet("compaction", ROWS, 1);
+        sheet.setRecalculationMode(RecalculationMode.SEQUENTIAL);
+
+        return sheet;
+    }
+
+    // Every cell of version v holds a long string ending with v, so every delta changes all of them.
+    private static void editAll(Sheet sheet, int version) {
+
+        Map<Coordinate, String> cells = new HashMap<>();
+
+        for (int row = 1; row <= ROWS; row++) {
+            cells.put(cell(row), valueOf(row, version));
+        }
+
+        sheet.setVersion(version);
+        sheet.setCells(cells);
+    }
+
+    private static void checkVersion(VersionManagerImpl versionManager, int version) {
+
+        for (int row = 1; row <= ROWS; row++) {
+            Check.equal(valueOf(row, version), versionManager.getVersion(version).getCell(cell(row)).getOriginalValue(),
+                    "row " + row + " of version " + version);
+        }
+    }
+
+    private static String valueOf(int row, int version) {
+        return "row " + row + " ".repeat(100) + version;
+    }
+
+    private static Coordinate cell(int row) {
+        return Check.cell(row - 1, 0);
+    }
+
+    private static void awaitCompaction(VersionManagerImpl versionManager) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 60_000;
+
+        while (versionManager.isCompacting()) {
+            Check.isTrue(System.currentTimeMillis() < deadline, "the compactor finished within a minute");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package expression.parser;
+
+import java.util.Random;
+
+// Times parsing a mix of original values, and parsing a value nested deeper and deeper. It isn't a check, so it's
+// not part of RunChecks: run it by itself with the engine classes on the class path, optionally with the number of
+// rounds. The mix is numbers, strings and formulas nested up to three levels, as sheets hold them. The nested
+// value doubles its depth every step, so the time per step should double too.
+public class ExpressionParserBenchmark {
+
+    private static final int VALUES = 10_000;
+    private static final int PASSES = 30;
+
+    public static void main(String[] args) {
+
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        String[] values = mixOfValues();
+
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            int blackhole = 0;
+
+            for (int pass = 0; pass < PASSES; pass++) {
+                for (String value : values) {
+                    blackhole += ExpressionParser.parse(value).getReferences().size();
+                }
+            }
+
+            System.out.printf("mix round %d: %.0f ns/value (%d)%n", round,
+                    (System.nanoTime() - start) / (double) (PASSES * VALUES), blackhole);
+        }
+
+        for (int depth = 1_000; depth <= 1_024_000; depth *= 2) {
+            String value = "{ABS,".repeat(depth) + "-7" + "}".repeat(depth);
+            long best = Long.MAX_VALUE;
+
+            for (int repeat = 0; repeat < 3; repeat++) {
+                long start = System.nanoTime();
+                ExpressionParser.parse(value);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+
+            System.out.printf("depth %d: %.2f ms%n", depth, best / 1e6);
+        }
+    }
+
+    private static String[] mixOfValues() {
+
+        Random random = new Random(1);
+        String[] values = new String[VALUES];
+
+        for (int i = 0; i < values.length; i++) {
+            String cell = cellName(random);
+            String otherCell = cellName(random);
+
+            values[i] = switch (i % 5) {
+                case 0 -> Integer.toString(random.nextInt(1000));
+                case 1 -> "hello world " + i;
+                case 2 -> "{PLUS,{REF," + cell + "},{REF," + otherCell + "}}";
+                case 3 -> "{CONCAT,{REF," + cell + "},{SUB,abcdef,1,{ABS,-3}}}";
+                default -> "{TIMES,{PLUS,{REF," + cell + "},2.5},{MINUS,{POW,2,3},{REF," + otherCell + "}}}";
+            };
+        }
+
+        return values;
+    }
+
+    private static String cellName(Random random) {
+        return "" + (char) ('A' + random.nextInt(26)) + (1 + random.nextInt(500));
+    }
+}
@@ -0,0 +1,101 @@
+package expression.parser;
+
+import check.Check;
+import expression.api.Expression;
+import sheet.coordinate.impl.CoordinateFactory;
+
+import java.util.Set;
+
+// How values are split into functions and their arguments, including values whose braces don't match up, and
+// that parsing takes time linear in the nesting depth.
+public class ExpressionParserCheck {
+
+    private static final int DEPTH = 25_000;
+
+    public static void main(String[] args) {
+        checkArguments();
+        checkUnbalancedBraces();
+        checkReferences();
+        checkLinearInDepth();
+    }
+
+    private static void checkArguments() {
+
+        Check.equal(3.0, valueOf("{PLUS,1,2}"), "a function");
+        Check.equal(3.0, valueOf("{PLUS,1,2,}"), "an empty last argument is left out");
+        Check.equal(3.0, valueOf("{ plus ,1,2}"), "the name of a function ignores its case and spaces");
+        Check.equal("abcd", valueOf("{CONCAT,{CONCAT,a,b},{CONCAT,c,d}}"), "nested functions side by side");
+        Check.equal(" {PLUS,1,2}", valueOf(" {PLUS,1,2}"), "a value that doesn't start with a brace is a string");
+        Check.equal("{PLUS,1,2}x", valueOf("{PLUS,1,2}x"), "a value that doesn't end with a brace is a string");
+        Check.equal(37.0, valueOf("{ABS,{MINUS,{PLUS,1,2},{TIMES,{POW,2,3},{DIVIDE,10,{PLUS,1,1}}}}}"), "deep arguments");
+
+        Check.fails(IllegalArgumentException.class, () -> ExpressionParser.parse("{}"), "a function without a name");
+        Check.fails(IllegalArgumentException.class, () -> ExpressionParser.parse("{NOPE,1}"), "an unknown function");
+        Check.fails(RuntimeException.class, () -> ExpressionParser.parse("{PLUS,1,,2}"), "an empty argument in the middle");
+    }
+
+    // The content of a function is split at the commas of its own braces, and a '}' it didn't open is an error.
+    // An opened brace that isn't closed inside an argument keeps the rest of the content in that argument.
+    private static void checkUnbalancedBraces() {
+
+        IllegalArgumentException failure = Check.fails(IllegalArgumentException.class,
+                () -> ExpressionParser.parse("{PLUS,1}}"), "a brace closed too early");
+        Check.isTrue(failure.getMessage().contains("The braces are not balanced"), "the message of " + failure);
+
+        Check.fails(IllegalArgumentException.class, () -> ExpressionParser.parse("{ABS,{PLUS,1}{MINUS,2}}"),
+                "an argument with two functions side by side");
+        Check.fails(IllegalArgumentException.class, () -> ExpressionParser.parse("{ABS,{ABS,{ABS,1}},2}}"),
+                "a brace closed too early deep inside");
+
+        Check.equal("{1,2", valueOf("{CONCAT,a,{1,2}").toString().substring(1), "an argument whose brace isn't closed");
+        Check.equal("{PLUS,1,2", valueOf("{PLUS,1,2"), "a function that isn't closed is a string");
+        Check.equal("}", valueOf("}"), "a closing brace alone is a string");
+    }
+
+    private static void checkReferences() {
+
+        Check.equal(Set.of(CoordinateFactory.createCoordinate(0, 0), CoordinateFactory.createCoordinate(1, 1)),
+                ExpressionParser.parse("{PLUS,{REF,A1},{ABS,{REF,B2}}}").getReferences(), "the references of a formula");
+        Check.equal(Set.of(), ExpressionParser.parse("x{REF,A1}").getReferences(), "a string that looks like a reference");
+    }
+
+    // A value nested 8 times as deep takes about 8 times as long to parse. Going over the content of every level
+    // again would take about 64 times as long.
+    private static void checkLinearInDepth() {
+
+        String shallow = nestedAbs(DEPTH);
+        String deep = nestedAbs(8 * DEPTH);
+
+        // Warming up first, so the shallow value isn't timed before it's compiled.
+        timeToParse(shallow);
+        timeToParse(deep);
+
+        long shallowTime = timeToParse(shallow);
+        long deepTime = timeToParse(deep);
+
+        Check.isTrue(deepTime < 20 * shallowTime, "parsing " + 8 * DEPTH + " levels took " + deepTime / 1_000_000
+                + " ms, and " + DEPTH + " levels " + shallowTime / 1_000_000 + " ms");
+    }
+
+    private static long timeToParse(String value) {
+
+        long best = Long.MAX_VALUE;
+
+        for (int repeat = 0; repeat < 3; repeat++) {
+            long start = System.nanoTime();
+            ExpressionParser.parse(value);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best;
+    }
+
+    private static String nestedAbs(int depth) {
+        return "{ABS,".repeat(depth) + "-7" + "}".repeat(depth);
+    }
+
+    private static Object valueOf(String value) {
+        Expression expression = ExpressionParser.parse(value).getExpression();
+        return expression.evaluate().getValue();
+    }
+}
@@ -0,0 +1,59 @@
+package sheet.impl;
+
+import check.Check;
+import sheet.api.Sheet;
+import sheet.coordinate.api.Coordinate;
+import sheet.coordinate.impl.CoordinateFactory;
+import sheet.layout.impl.LayoutImpl;
+import sheet.layout.size.impl.SizeImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// A circle reads in the influence order, each cell followed by a cell that refers to it, whether it's found by
+// the check of a batch or by the rank search of a single edit.
+public class CircleMessageCheck {
+
+    public static void main(String[] args) {
+
+        // B1 refers to A1, C1 to B1 and A1 to C1, so the circle is A1 -> B1 -> C1 -> A1.
+        List<String> expected = List.of("A1", "B1", "C1");
+
+        Sheet batchSheet = newSheet();
+        String batchMessage = Check.fails(IllegalArgumentException.class, () -> batchSheet.setCells(Map.of(
+                coordinate("A1"), "{REF,C1}",
+                coordinate("B1"), "{REF,A1}",
+                coordinate("C1"), "{REF,B1}")), "a batch with a circle").getMessage();
+        Check.equal(expected, cycleOf(batchMessage), "the circle of a batch in " + batchMessage);
+
+        Sheet editSheet = newSheet();
+        editSheet.setCells(Map.of(coordinate("A1"), "1", coordinate("B1"), "{REF,A1}", coordinate("C1"), "{REF,B1}"));
+        String editMessage = Check.fails(IllegalArgumentException.class,
+                () -> editSheet.setCell(coordinate("A1"), "{REF,C1}"), "an edit that closes a circle").getMessage();
+        Check.equal(expected, cycleOf(editMessage), "the circle of a single edit in " + editMessage);
+    }
+
+    // The cells of "Circular voting: X -> Y -> Z -> X", turned to start with the smallest one.
+    private static List<String> cycleOf(String message) {
+
+        Check.isTrue(message.startsWith("Circular voting: "), "a circle message: " + message);
+
+        List<String> cells = new ArrayList<>(Arrays.asList(message.substring("Circular voting: ".length()).split(" -> ")));
+        Check.equal(cells.getFirst(), cells.getLast(), "the circle ends where it starts in " + message);
+        cells.removeLast();
+        Collections.rotate(cells, -cells.indexOf(Collections.min(cells)));
+
+        return cells;
+    }
+
+    private static Sheet newSheet() {
+        return SheetImpl.create("circle", LayoutImpl.create(SizeImpl.create(10, 1), 3, 3));
+    }
+
+    private static Coordinate coordinate(String cellId) {
+        return CoordinateFactory.toCoordinate(cellId);
+    }
+}
@@ -0,0 +1,128 @@
+package sheet.impl;
+
+import check.Check;
+import sheet.api.RecalculationMode;
+import sheet.api.Sheet;
+import sheet.api.SheetGetters;
+import sheet.coordinate.api.Coordinate;
+import sheet.coordinate.impl.CoordinateFactory;
+import sheet.layout.impl.LayoutImpl;
+import sheet.layout.size.impl.SizeImpl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// The lazy mode only marks cells when they're edited and when a version is taken. Every version still reads
+// the values it had, and an expression that fails to evaluate is reported when it's read.
+public class LazyModeCheck {
+
+    private static final int CHAIN_LENGTH = 100_000;
+
+    public static void main(String[] args) {
+        checkSnapshotsDontEvaluate();
+        checkCellsDirtyAcrossSnapshots();
+        checkEvaluationFailure();
+        checkSnapshotDependents();
+    }
+
+    // A1 <- A2 <- ... <- A100000, edited at its head again and again with a version after each edit.
+    private static void checkSnapshotsDontEvaluate() {
+
+        Sheet sheet = newSheet(CHAIN_LENGTH);
+        Map<Coordinate, String> cells = new HashMap<>();
+
+        cells.put(cell(1), "0");
+        for (int row = 2; row <= CHAIN_LENGTH; row++) {
+            cells.put(cell(row), "{PLUS,{REF,A" + (row - 1) + "},1}");
+        }
+
+        sheet.setCells(cells);
+        sheet.takeSnapshot();
+
+        SheetGetters[] versions = new SheetGetters[5];
+
+        for (int edit = 0; edit < versions.length; edit++) {
+            sheet.setCell(cell(1), Integer.toString(edit * 10));
+            versions[edit] = sheet.takeSnapshot();
+            Check.isTrue(sheet.getCell(cell(CHAIN_LENGTH)).isDirty(), "a version leaves the end of the chain dirty");
+        }
+
+        // Reading the versions from the last to the first, each one has its own values.
+        for (int edit = versions.length - 1; edit >= 0; edit--) {
+            Check.equal(edit * 10.0 + CHAIN_LENGTH - 1, valueOf(versions[edit], CHAIN_LENGTH),
+                    "the end of the chain in version " + edit);
+        }
+
+        Check.equal(40.0 + CHAIN_LENGTH - 1, valueOf(sheet, CHAIN_LENGTH), "the end of the chain in the sheet");
+    }
+
+    // B1 is still dirty from the first version when A1 changes again, so it has to be taken again by the second.
+    private static void checkCellsDirtyAcrossSnapshots() {
+
+        Sheet sheet = newSheet(3);
+        sheet.setCells(Map.of(cell(1), "1", cell(2), "{TIMES,{REF,A1},2}", cell(3), "{PLUS,{REF,A2},1}"));
+        sheet.takeSnapshot();
+
+        sheet.setCell(cell(1), "10");
+        SheetGetters first = sheet.takeSnapshot();
+        sheet.setCell(cell(1), "100");
+        SheetGetters second = sheet.takeSnapshot();
+
+        Check.equal(201.0, valueOf(second, 3), "A3 of the second version");
+        Check.equal(21.0, valueOf(first, 3), "A3 of the first version");
+        Check.equal(20.0, valueOf(first, 2), "A2 of the first version");
+    }
+
+    // The same failing edit is rolled back in the sequential mode and accepted in the lazy mode.
+    private static void checkEvaluationFailure() {
+
+        String failingSub = "{SUB,abc,0,{REF,A1}}";
+
+        Sheet sequential = newSheet(2);
+        sequential.setRecalculationMode(RecalculationMode.SEQUENTIAL);
+        sequential.setCells(Map.of(cell(1), "10", cell(2), "x"));
+        Check.fails(RuntimeException.class, () -> sequential.setCell(cell(2), failingSub), "a sequential failing edit");
+        Check.equal("x", sequential.getCell(cell(2)).getOriginalValue(), "A2 after the sequential edit failed");
+
+        Sheet lazy = newSheet(2);
+        lazy.setCells(Map.of(cell(1), "10", cell(2), "x"));
+        lazy.setCell(cell(2), failingSub);
+        Check.equal(failingSub, lazy.getCell(cell(2)).getOriginalValue(), "A2 after the lazy edit");
+        Check.fails(RuntimeException.class, () -> valueOf(lazy, 2), "reading the failing cell");
+        Check.fails(RuntimeException.class, () -> valueOf(lazy.takeSnapshot(), 2), "reading the failing cell's version");
+        Check.fails(RuntimeException.class, () -> valueOf(lazy, 2), "reading the failing cell again");
+
+        lazy.setCell(cell(1), "2");
+        Check.equal("ab", valueOf(lazy, 2), "A2 once A1 is in the bounds of its string");
+    }
+
+    // A version finds the same dependents as the sheet it was taken from, and keeps them when the sheet changes.
+    private static void checkSnapshotDependents() {
+
+        Sheet sheet = newSheet(3);
+        sheet.setCells(Map.of(cell(1), "1", cell(2), "{TIMES,{REF,A1},2}", cell(3), "{PLUS,{REF,A1},{REF,A2}}"));
+        SheetGetters version = sheet.takeSnapshot();
+        Check.sameCells(sheet, version, "the version");
+
+        sheet.setCell(cell(3), "3");
+        Check.sameCells(sheet, sheet.takeSnapshot(), "the version after A3 changed");
+        Check.equal(2, version.getCell(cell(1)).getInfluenceOn().size(), "the dependents of A1 in the first version");
+        Check.equal(1, sheet.getCell(cell(1)).getInfluenceOn().size(), "the dependents of A1 in the sheet");
+    }
+
+    private static Sheet newSheet(int rows) {
+
+        Sheet sheet = SheetImpl.create("lazy", LayoutImpl.create(SizeImpl.create(10, 1), rows, 1));
+        sheet.setRecalculationMode(RecalculationMode.LAZY);
+
+        return sheet;
+    }
+
+    private static Coordinate cell(int row) {
+        return CoordinateFactory.createCoordinate(row - 1, 0);
+    }
+
+    private static Object valueOf(SheetGetters sheet, int row) {
+        return sheet.getCell(cell(row)).getEffectiveValue().getValue();
+    }
+}
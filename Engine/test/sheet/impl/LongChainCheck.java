@@ -0,0 +1,96 @@
+package sheet.impl;
+
+import check.Check;
+import expression.api.Expression;
+import expression.parser.OrignalValueUtilis;
+import sheet.api.Sheet;
+import sheet.coordinate.api.Coordinate;
+import sheet.coordinate.impl.CoordinateFactory;
+import sheet.layout.impl.LayoutImpl;
+import sheet.layout.size.impl.SizeImpl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// A chain of a million cells, A1 <- A2 <- ... <- A1000000, and a deeply nested formula, on a thread with a small
+// stack. Every traversal of the chain and the parser keep their state on the heap, so neither may overflow it.
+public class LongChainCheck {
+
+    private static final int CHAIN_LENGTH = 1_000_000;
+    private static final int NESTING_DEPTH = 1_000_000;
+    private static final int NESTING_DEPTH_IN_CELL = 1_000;
+    private static final long STACK_SIZE = 512 * 1024;
+
+    public static void main(String[] args) throws Throwable {
+
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                checkChain();
+                checkNestedFormula();
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, "long-chain-check", STACK_SIZE);
+
+        thread.start();
+        thread.join();
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    private static void checkChain() {
+
+        Sheet sheet = SheetImpl.create("chain", LayoutImpl.create(SizeImpl.create(10, 1), CHAIN_LENGTH, 1));
+        Map<Coordinate, String> cells = new HashMap<>();
+
+        cells.put(cell(1), "1");
+        for (int row = 2; row <= CHAIN_LENGTH; row++) {
+            cells.put(cell(row), "{PLUS,{REF,A" + (row - 1) + "},1}");
+        }
+
+        sheet.setCells(cells);
+        Check.equal((double) CHAIN_LENGTH, valueOf(sheet, CHAIN_LENGTH), "end of the chain after setCells");
+
+        sheet.setCell(cell(1), "5");
+        Check.equal(CHAIN_LENGTH + 4.0, valueOf(sheet, CHAIN_LENGTH), "end of the chain after editing its head");
+
+        // Closing the chain into a circle, through a single edit and through a batch.
+        String message = Check.fails(IllegalArgumentException.class,
+                () -> sheet.setCell(cell(1), "{REF,A" + CHAIN_LENGTH + "}"), "a single edit that closes a circle")
+                .getMessage();
+        Check.isTrue(message.startsWith("Circular voting: "), "circle message: " + message.substring(0, 40));
+
+        Check.fails(IllegalArgumentException.class, () -> sheet.setCells(Map.of(
+                cell(1), "{REF,A" + CHAIN_LENGTH + "}",
+                cell(2), "{PLUS,{REF,A1},1}")), "a batch that closes a circle");
+
+        Check.equal("5", sheet.getCell(cell(1)).getOriginalValue(), "head of the chain after the failed edits");
+        Check.equal(CHAIN_LENGTH + 4.0, valueOf(sheet, CHAIN_LENGTH), "end of the chain after the failed edits");
+    }
+
+    private static void checkNestedFormula() {
+
+        Expression expression = OrignalValueUtilis.toExpression(nestedAbs(NESTING_DEPTH, "-7"));
+        Check.isTrue(expression != null, "the deeply nested formula is parsed");
+
+        Sheet sheet = SheetImpl.create("nested", LayoutImpl.create(SizeImpl.create(10, 1), 2, 1));
+        sheet.setCell(cell(1), "-3");
+        sheet.setCell(cell(2), nestedAbs(NESTING_DEPTH_IN_CELL, "{REF,A1}"));
+        Check.equal(3.0, valueOf(sheet, 2), "the nested formula in a cell");
+    }
+
+    private static String nestedAbs(int depth, String innermost) {
+        return "{ABS,".repeat(depth) + innermost + "}".repeat(depth);
+    }
+
+    private static Coordinate cell(int row) {
+        return CoordinateFactory.createCoordinate(row - 1, 0);
+    }
+
+    private static Object valueOf(Sheet sheet, int row) {
+        return sheet.getCell(cell(row)).getEffectiveValue().getValue();
+    }
+}
@@ -0,0 +1,105 @@
+package sheet.impl;
+
+import check.Check;
+import sheet.api.RecalculationMode;
+import sheet.api.Sheet;
+import sheet.coordinate.api.Coordinate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+// A sheet file reads back every cell of the sheet it was written from, and finds the rows and columns the sheet
+// uses from the tiles at its edges only.
+public class MappedSheetCheck {
+
+    private static final int SIZE = 300;
+
+    public static void main(String[] args) throws IOException {
+
+        Path file = Files.createTempFile("mapped-check", ".sheet");
+
+        try {
+            checkRoundTrip(file);
+            checkUsedBounds(file);
+            checkEmptySheet(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Cells all over the sheet, each referring to a cell in another tile, so the dependents cross tiles too.
+    private static void checkRoundTrip(Path file) throws IOException {
+
+        Sheet sheet = newSheet();
+        Map<Coordinate, String> cells = new HashMap<>();
+
+        for (int row = 0; row < SIZE; row += 7) {
+            for (int column = 0; column < SIZE; column += 11) {
+                cells.put(Check.cell(row, column), Integer.toString(row * SIZE + column));
+            }
+        }
+
+        for (int row = 3; row < SIZE; row += 13) {
+            for (int column = 5; column < SIZE; column += 17) {
+                Coordinate referred = Check.cell((row + 70) % SIZE / 7 * 7, (column + 70) % SIZE / 11 * 11);
+                cells.put(Check.cell(row, column), "{PLUS,{REF," + Check.nameOf(referred) + "}," + row + "}");
+            }
+        }
+
+        cells.put(Check.cell(SIZE - 1, SIZE - 1), "last");
+        sheet.setCells(cells);
+        sheet.setCell(Check.cell(0, 0), "edited");
+
+        MappedSheet.write(sheet, file);
+
+        try (MappedSheet mappedSheet = MappedSheet.open(file)) {
+            Check.equal(sheet.getName(), mappedSheet.getName(), "the name");
+            Check.equal(sheet.getVersion(), mappedSheet.getVersion(), "the version");
+            Check.equal(sheet.getRecalculationMode(), mappedSheet.getRecalculationMode(), "the recalculation mode");
+            Check.equal(sheet.getLayout().getRows(), mappedSheet.getLayout().getRows(), "the rows of the layout");
+            Check.equal(sheet.getActiveCells().size(), mappedSheet.getActiveCells().size(), "the number of cells");
+
+            Check.sameCells(sheet, mappedSheet, "the sheet file");
+            Check.sameCells(sheet, mappedSheet.toSheet(), "the sheet read from the file");
+        }
+    }
+
+    // Cells in the tiles (0, 0), (3, 0) and (1, 3). The last tile row and the last tile column each have one tile.
+    private static void checkUsedBounds(Path file) throws IOException {
+
+        Sheet sheet = newSheet();
+        sheet.setCells(Map.of(Check.cell(5, 5), "a", Check.cell(200, 10), "b", Check.cell(70, 250), "c"));
+        MappedSheet.write(sheet, file);
+
+        Check.equal(201, sheet.getUsedRows(), "the used rows of the sheet");
+        Check.equal(251, sheet.getUsedColumns(), "the used columns of the sheet");
+
+        try (MappedSheet mappedSheet = MappedSheet.open(file)) {
+            Check.equal(201, mappedSheet.getUsedRows(), "the used rows of the sheet file");
+            Check.equal(251, mappedSheet.getUsedColumns(), "the used columns of the sheet file");
+            Check.equal(2, mappedSheet.getNumberOfLoadedTiles(), "the tiles read for the used rows and columns");
+        }
+    }
+
+    private static void checkEmptySheet(Path file) throws IOException {
+
+        MappedSheet.write(newSheet(), file);
+
+        try (MappedSheet mappedSheet = MappedSheet.open(file)) {
+            Check.equal(0, mappedSheet.getUsedRows(), "the used rows of an empty sheet file");
+            Check.equal(0, mappedSheet.getUsedColumns(), "the used columns of an empty sheet file");
+            Check.isTrue(mappedSheet.getActiveCells().isEmpty(), "an empty sheet file has no cells");
+        }
+    }
+
+    private static Sheet newSheet() {
+
+        Sheet sheet = Check.newSheet("mapped", SIZE, SIZE);
+        sheet.setRecalculationMode(RecalculationMode.PARALLEL);
+
+        return sheet;
+    }
+}
@@ -0,0 +1,119 @@
+package sheet.impl;
+
+import check.Check;
+import sheet.api.Sheet;
+import sheet.coordinate.api.Coordinate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The ranks are taken above the highest one and below the lowest one, so a long lived sheet runs out of them. Each
+// way of taking ranks starts here a few ranks before the end of the int range and has to go on past it.
+public class RankOverflowCheck {
+
+    private static final int CHAIN_LENGTH = 10;
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+        checkBatchEdit();
+        checkSingleEdit();
+        checkLoad();
+        checkEmptyCells();
+    }
+
+    // Every cell of a batch and everything it influences are ranked again above the others.
+    private static void checkBatchEdit() throws ReflectiveOperationException {
+
+        Sheet sheet = newSheet();
+        setRanks(sheet, 0, Integer.MAX_VALUE - 3);
+        sheet.setCells(chain());
+        checkChain(sheet, 1, "the chain set in one batch");
+
+        setRanks(sheet, 0, Integer.MAX_VALUE - 3);
+        sheet.setCells(Map.of(cell(1), "5", cell(5), "{PLUS,{REF,A4},1}"));
+        checkChain(sheet, 5, "the chain after a batch edit");
+    }
+
+    // A new cell is ranked above the others, and an edge that breaks the order reuses the ranks it reorders.
+    private static void checkSingleEdit() throws ReflectiveOperationException {
+
+        Sheet sheet = newSheet();
+        sheet.setCells(chain());
+
+        setRanks(sheet, 0, Integer.MAX_VALUE);
+        sheet.setCell(cell(CHAIN_LENGTH + 1), "{PLUS,{REF,A" + CHAIN_LENGTH + "},1}");
+        sheet.setCell(cell(1), "{PLUS,{REF,A" + (CHAIN_LENGTH + 2) + "},1}");
+        sheet.setCell(cell(CHAIN_LENGTH + 2), "100");
+        Check.equal(101.0 + CHAIN_LENGTH, valueOf(sheet, CHAIN_LENGTH + 1), "the end of the chain after single edits");
+    }
+
+    // Loading ranks the whole sheet level by level.
+    private static void checkLoad() throws ReflectiveOperationException {
+
+        Sheet sheet = newSheet();
+        setRanks(sheet, 0, Integer.MAX_VALUE - 3);
+        sheet.loadCells(List.of(chain()).iterator());
+        checkChain(sheet, 1, "the loaded chain");
+
+        sheet.setCell(cell(1), "7");
+        checkChain(sheet, 7, "the loaded chain after an edit");
+    }
+
+    // An empty cell that's referred to is ranked below everything.
+    private static void checkEmptyCells() throws ReflectiveOperationException {
+
+        Sheet sheet = newSheet();
+        sheet.setCells(chain());
+
+        setRanks(sheet, Integer.MIN_VALUE + 1, 0);
+        sheet.editCells(Map.of(Check.cell(0, 1), "{REF,C1}", Check.cell(1, 1), "{REF,C2}", Check.cell(2, 1), "{REF,C3}"));
+        sheet.editCells(Map.of(Check.cell(0, 2), "3", Check.cell(1, 2), "2", Check.cell(2, 2), "1"));
+        Check.equal(3.0, sheet.getCell(Check.cell(0, 1)).getEffectiveValue().getValue(), "B1 once C1 is set");
+        Check.equal(1.0, sheet.getCell(Check.cell(2, 1)).getEffectiveValue().getValue(), "B3 once C3 is set");
+
+        sheet.setCell(cell(1), "2");
+        checkChain(sheet, 2, "the chain next to the empty cells");
+    }
+
+    // A1 holds the first value and every next cell adds one.
+    private static Map<Coordinate, String> chain() {
+
+        Map<Coordinate, String> cells = new HashMap<>();
+
+        cells.put(cell(1), "1");
+        for (int row = 2; row <= CHAIN_LENGTH; row++) {
+            cells.put(cell(row), "{PLUS,{REF,A" + (row - 1) + "},1}");
+        }
+
+        return cells;
+    }
+
+    private static void checkChain(Sheet sheet, int first, String message) {
+        for (int row = 1; row <= CHAIN_LENGTH; row++) {
+            Check.equal((double) first + row - 1, valueOf(sheet, row), "A" + row + " of " + message);
+        }
+    }
+
+    // The ranks the sheet takes its next ones from, as if it had already taken that many.
+    private static void setRanks(Sheet sheet, int lowestRank, int highestRank) throws ReflectiveOperationException {
+
+        var lowest = SheetImpl.class.getDeclaredField("lowestRank");
+        var highest = SheetImpl.class.getDeclaredField("highestRank");
+        lowest.setAccessible(true);
+        highest.setAccessible(true);
+        lowest.setInt(sheet, lowestRank);
+        highest.setInt(sheet, highestRank);
+    }
+
+    private static Sheet newSheet() {
+        return Check.newSheet("ranks", CHAIN_LENGTH + 2, 3);
+    }
+
+    private static Coordinate cell(int row) {
+        return Check.cell(row - 1, 0);
+    }
+
+    private static Object valueOf(Sheet sheet, int row) {
+        return sheet.getCell(cell(row)).getEffectiveValue().getValue();
+    }
+}
@@ -1,12 +1,15 @@
 import engine.api.Engine;
 import engine.impl.EngineImpl;
+import engine.version.manager.api.RetentionPolicy;
+import engine.version.manager.api.VersionInfo;
 import engine.version.manager.api.VersionManagerGetters;
+import sheet.api.RecalculationMode;
 import sheet.api.SheetGetters;
 import sheet.cell.api.CellGetters;
+import sheet.coordinate.impl.CoordinateFactory;
 import sheet.layout.api.LayoutGetters;
 import sheet.layout.size.api.SizeGetters;
 
-import java.io.*;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Scanner;
@@ -40,16 +43,87 @@ public enum UI {
                 if (filename.equals("{BACK}")) {
                     return;
                 }
-                try (ObjectInputStream in =
-                             new ObjectInputStream(
-                                     new FileInputStream(filename))) {
-                    engine = (Engine) in.readObject();
+                try {
+                    engine.readBinaryFile(filename);
                     System.out.println("Read successfully!");
-                    runMenu(SECOND_MENU);
-                    break;
-                } catch (ClassNotFoundException | IOException e) {
+                } catch (RuntimeException e) {
                     System.out.println("Error reading binary file! Please try again or enter '{BACK}' to exit.");
+                    continue;
+                }
+                runMenu(SECOND_MENU);
+                break;
+            }
+
+        }
+    },
+    LOAD_CSV_FILE("Load CSV/TSV File", MAIN_MENU) {
+        @Override
+        void execute() {
+            Scanner scanner = new Scanner(System.in);
+
+            while (true) {
+                System.out.println("Please enter the CSV or TSV file name: ");
+                String filename = scanner.nextLine();
+                if (filename.equals("{BACK}")) {
+                    return;
+                }
+                try {
+                    engine.readCSVFile(filename);
+                    System.out.println("Read successfully!");
+                } catch (RuntimeException e) {
+                    System.out.println("Error reading CSV file! Please try again or enter '{BACK}' to exit.");
+                    continue;
+                }
+                runMenu(SECOND_MENU);
+                break;
+            }
+
+        }
+    },
+    RECOVER_FROM_BINARY_FILE("Recover From Binary File", MAIN_MENU) {
+        @Override
+        void execute() {
+            Scanner scanner = new Scanner(System.in);
+
+            while (true) {
+                System.out.println("Please enter the binary file name: ");
+                String filename = scanner.nextLine();
+                if (filename.equals("{BACK}")) {
+                    return;
+                }
+                try {
+                    engine.recoverBinaryFile(filename);
+                    System.out.println("Recovered successfully!");
+                } catch (RuntimeException e) {
+                    System.out.println("Error recovering binary file! Please try again or enter '{BACK}' to exit.");
+                    continue;
+                }
+                runMenu(SECOND_MENU);
+                break;
+            }
+
+        }
+    },
+    OPEN_SHEET_FILE("Open Sheet File", MAIN_MENU) {
+        @Override
+        void execute() {
+            Scanner scanner = new Scanner(System.in);
+
+            while (true) {
+                System.out.println("Please enter the sheet file name: ");
+                String filename = scanner.nextLine();
+                if (filename.equals("{BACK}")) {
+                    return;
                 }
+                try {
+                    engine.openSheetFile(filename);
+                    System.out.println("Opened successfully!");
+                } catch (RuntimeException e) {
+                    System.out.println("Error opening sheet file! Please try again or enter '{BACK}' to exit.");
+                    continue;
+                }
+                runMenu(SECOND_MENU);
+                break;
             }
 
         }
@@ -132,6 +206,20 @@ public enum UI {
 
         }
     },
+    UNDO("Undo Last Update", SECOND_MENU) {
+        @Override
+        void execute() {
+            engine.undo();
+            System.out.println("Undone successfully, the sheet is now at version " + engine.getSheetStatus().getVersion() + ".");
+        }
+    },
+    REDO("Redo Last Undone Update", SECOND_MENU) {
+        @Override
+        void execute() {
+            engine.redo();
+            System.out.println("Redone successfully, the sheet is now at version " + engine.getSheetStatus().getVersion() + ".");
+        }
+    },
     SHOW_VERSIONS("Show Versions", SECOND_MENU) {
         @Override
         void execute() {
@@ -159,6 +247,63 @@ public enum UI {
             }
         }
     },
+    SET_RETENTION_POLICY("Set Versions Retention Policy", SECOND_MENU) {
+        @Override
+        void execute() {
+            Scanner scanner = new Scanner(System.in);
+            RetentionPolicy retentionPolicy = engine.getVersionsManagerStatus().getRetentionPolicy();
+            System.out.println("The last " + retentionPolicy.getKeepLast() + " versions are kept, and older ones every "
+                    + retentionPolicy.getThinInterval() + " versions" + (retentionPolicy.getMaxBytes() == Long.MAX_VALUE ? "."
+                    : " while they take up to " + retentionPolicy.getMaxBytes() + " bytes."));
+
+            while (true) {
+                try {
+                    System.out.println("Enter how many of the last versions to always keep (or '{BACK}' to cancel the operation): ");
+                    String keepLastStr = scanner.nextLine().trim();
+                    if (keepLastStr.equalsIgnoreCase("{BACK}")) {
+                        return;
+                    }
+                    int keepLast = Integer.parseInt(keepLastStr);
+                    System.out.println("Keep every how many older versions? (1 keeps them all): ");
+                    int thinInterval = Integer.parseInt(scanner.nextLine().trim());
+                    System.out.println("Enter the most bytes the older versions may take (or press Enter for no limit): ");
+                    String maxBytesStr = scanner.nextLine().trim();
+                    long maxBytes = maxBytesStr.isEmpty() ? Long.MAX_VALUE : Long.parseLong(maxBytesStr);
+
+                    engine.setRetentionPolicy(keepLast, thinInterval, maxBytes);
+                    System.out.println("Retention policy set successfully!");
+                    break;
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid input: please enter an integer.");
+                } catch (IllegalArgumentException e) {
+                    System.out.println(e.getMessage() + ". Please try again or enter '{BACK}' to exit.");
+                }
+            }
+        }
+    },
+    SET_RECALCULATION_MODE("Set Recalculation Mode", SECOND_MENU) {
+        @Override
+        void execute() {
+            Scanner scanner = new Scanner(System.in);
+            System.out.println("The sheet is recalculated in the " + engine.getSheetStatus().getRecalculationMode() + " mode.");
+
+            while (true) {
+                System.out.println("Please enter the recalculation mode (SEQUENTIAL, PARALLEL or LAZY): ");
+                System.out.println("In the LAZY mode a cell is evaluated only when it's shown, and an update whose value fails to evaluate is kept.");
+                String mode = scanner.nextLine().trim().toUpperCase();
+                if (mode.equals("{BACK}")) {
+                    return;
+                }
+                try {
+                    engine.setRecalculationMode(RecalculationMode.valueOf(mode));
+                    System.out.println("Recalculation mode set successfully!");
+                    break;
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Invalid recalculation mode! Please try again or enter '{BACK}' to exit.");
+                }
+            }
+        }
+    },
     WRITE_TO_BINARY_FILE("Write To Binary File", SECOND_MENU) {
         @Override
         void execute() {
@@ -170,22 +315,114 @@ public enum UI {
                 if (filename.equals("{BACK}")) {
                     return;
                 }
-                try (ObjectOutputStream out =
-                             new ObjectOutputStream(
-                                     new FileOutputStream(filename))) {
-                    out.writeObject(engine);
-                    out.flush();
+                try {
+                    engine.writeBinaryFile(filename);
                     System.out.println("Write successfully!");
                     break;
-                } catch (FileNotFoundException e) {
-                    System.out.println("File not found. Please try again or enter '{BACK}' to exit.");
-                }
-                catch (IOException e) {
+                } catch (RuntimeException e) {
                     System.out.println("Error writing binary file! Please try again or enter '{BACK}' to exit.");
                 }
             }
         }
     },
+    WRITE_TO_SHEET_FILE("Write To Sheet File", SECOND_MENU) {
+        @Override
+        void execute() {
+            Scanner scanner = new Scanner(System.in);
+
+            while (true) {
+                System.out.println("Please enter the sheet file name: ");
+                String filename = scanner.nextLine();
+                if (filename.equals("{BACK}")) {
+                    return;
+                }
+                try {
+                    engine.writeSheetFile(filename);
+                    System.out.println("Write successfully!");
+                    break;
+                } catch (RuntimeException e) {
+                    System.out.println("Error writing sheet file! Please try again or enter '{BACK}' to exit.");
+                }
+            }
+        }
+    },
+    WRITE_TO_XML_FILE("Write To XML File", SECOND_MENU) {
+        @Override
+        void execute() {
+            Scanner scanner = new Scanner(System.in);
+
+            while (true) {
+                try {
+                    System.out.println("Please enter the XML file name: ");
+                    String filename = scanner.nextLine();
+                    if (filename.equals("{BACK}")) {
+                        return;
+                    }
+                    System.out.println("Enter the version you want to write (or press Enter for the current one): ");
+                    String versionStr = scanner.nextLine().trim();
+                    int version = versionStr.isEmpty() ? engine.getSheetStatus().getVersion() : Integer.parseInt(versionStr);
+
+                    engine.writeXMLFile(filename, version);
+                    System.out.println("Write successfully!");
+                    break;
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid input: please enter an integer that represent the version you want to write.");
+                } catch (RuntimeException e) {
+                    System.out.println("Error writing XML file! Please try again or enter '{BACK}' to exit.");
+                }
+            }
+        }
+    },
+    WRITE_TO_CSV_FILE("Write To CSV/TSV File", SECOND_MENU) {
+        @Override
+        void execute() {
+            Scanner scanner = new Scanner(System.in);
+
+            while (true) {
+                try {
+                    System.out.println("Please enter the CSV or TSV file name: ");
+                    String filename = scanner.nextLine();
+                    if (filename.equals("{BACK}")) {
+                        return;
+                    }
+                    System.out.println("Enter the version you want to write (or press Enter for the current one): ");
+                    String versionStr = scanner.nextLine().trim();
+                    int version = versionStr.isEmpty() ? engine.getSheetStatus().getVersion() : Integer.parseInt(versionStr);
+                    System.out.println("Write the original values instead of the effective ones? (y/n): ");
+                    boolean writeOriginalValues = scanner.nextLine().trim().equalsIgnoreCase("y");
+
+                    engine.writeCSVFile(filename, version, writeOriginalValues);
+                    System.out.println("Write successfully!");
+                    break;
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid input: please enter an integer that represent the version you want to write.");
+                } catch (RuntimeException e) {
+                    System.out.println("Error writing CSV file! Please try again or enter '{BACK}' to exit.");
+                }
+            }
+        }
+    },
+    JOURNAL_TO_BINARY_FILE("Journal Updates To Binary File", SECOND_MENU) {
+        @Override
+        void execute() {
+            Scanner scanner = new Scanner(System.in);
+
+            while (true) {
+                System.out.println("Please enter the binary file name: ");
+                String filename = scanner.nextLine();
+                if (filename.equals("{BACK}")) {
+                    return;
+                }
+                try {
+                    engine.startJournal(filename);
+                    System.out.println("Journaling started!");
+                    break;
+                } catch (RuntimeException e) {
+                    System.out.println("Error starting journal! Please try again or enter '{BACK}' to exit.");
+                }
+            }
+        }
+    },
     BACK("Go Back", null) {
         @Override
         void execute() {
@@ -268,8 +505,10 @@ public enum UI {
         SizeGetters size = layout.getSize();
         int width = size.getWidth();
         int height = size.getHeight();
-        int rows = layout.getRows();
-        int columns = layout.getColumns();
+        // Only the part of the sheet that holds cells is printed, a large layout is mostly empty.
+        int rows = Math.min(layout.getRows(), usedRows(sheet));
+        int columns = Math.min(layout.getColumns(), usedColumns(sheet));
+        int rowNumberWidth = Math.max(2, String.valueOf(rows).length());
 
         StringBuilder sb = new StringBuilder();
 
@@ -277,19 +516,19 @@ public enum UI {
         sb.append("Version: ").append(sheet.getVersion()).append("\n");
 
         // Print column headers
-        sb.append("   |"); // Space for row numbers
+        sb.append(" ".repeat(rowNumberWidth + 1)).append("|"); // Space for row numbers
         for (int col = 0; col < columns; col++) {
-            sb.append(padBothSides(Character.toString((char) ('A' + col)), width)).append("|");
+            sb.append(padBothSides(CoordinateFactory.parseIntToColumn(col + 1), width)).append("|");
         }
         sb.append("\n");
 
         // Print each row
         for (int row = 0; row < rows; row++) {
-            sb.append(String.format("%02d |", row + 1)); // Row number with two digits
+            sb.append(String.format("%0" + rowNumberWidth + "d |", row + 1)); // Row number with at least two digits
             for (int line = 0; line < height; line++) {
                 for (int col = 0; col < columns; col++) {
                     CellGetters cell = engine.getCellStatus(sheet, row, col);
-                    String value = (cell != null && line == height / 2) ? cell.getEffectiveValue().toString() : ""; // Centered vertically
+                    String value = (cell != null && line == height / 2) ? effectiveValueOf(cell) : ""; // Centered vertically
 
                     // Trim value to fit column width
                     if (value.length() > width) {
@@ -300,13 +539,30 @@ public enum UI {
                 }
                 sb.append("\n");
                 if (line < height - 1) { // Print additional lines only if needed
-                    sb.append("   |"); // Space for row numbers
+                    sb.append(" ".repeat(rowNumberWidth + 1)).append("|"); // Space for row numbers
                 }
             }
         }
         System.out.println(sb.toString());
     }
 
+    // In the lazy mode a cell is evaluated when it's shown, so a cell that fails to evaluate is shown as an error.
+    private static String effectiveValueOf(CellGetters cell) {
+        try {
+            return cell.getEffectiveValue().toString();
+        } catch (RuntimeException e) {
+            return "#ERROR";
+        }
+    }
+
+    private static int usedRows(SheetGetters sheet) {
+        return Math.max(1, sheet.getUsedRows());
+    }
+
+    private static int usedColumns(SheetGetters sheet) {
+        return Math.max(1, sheet.getUsedColumns());
+    }
+
     private static String padBothSides(String value, int width) {
         int totalPadding = width - value.length();
         int paddingLeft = totalPadding / 2;
@@ -360,7 +616,7 @@ public enum UI {
         } else {
             sb.append("Cell ID: ").append(cellName)
                     .append("\nOriginal Value: ").append(cell.getOriginalValue())
-                    .append("\nEffective Value: ").append(cell.getEffectiveValue());
+                    .append("\nEffective Value: ").append(effectiveValueOf(cell));
         }
 
         System.out.println(sb.toString());
@@ -368,18 +624,20 @@ public enum UI {
 
     private static void printVersionsTable(VersionManagerGetters versionsManagerStatus) {
 
-        List<SheetGetters> versions = versionsManagerStatus.getVersions();
+        // The table needs only the details of every version, not the versions themselves.
+        List<VersionInfo> versions = versionsManagerStatus.getVersionInfos();
 
         StringBuilder sb = new StringBuilder();
 
         // Table Header
-        sb.append("|  Version  |  Cells Changed  |\n");
-        sb.append("|-----------|-----------------|\n");
+        sb.append("|  Version  |  Cells Changed  |  Evaluations Skipped  |\n");
+        sb.append("|-----------|-----------------|-----------------------|\n");
 
         // Table Rows
         for (int i = 0; i < versions.size(); i++) {
             sb.append("|").append(centerText(String.valueOf(versions.get(i).getVersion()), 11))
-                    .append("|").append(centerText(String.valueOf(versions.get(i).getNumberOfCellsThatChanged()), 17)).append("|\n");
+                    .append("|").append(centerText(String.valueOf(versions.get(i).getNumberOfCellsThatChanged()), 17))
+                    .append("|").append(centerText(String.valueOf(versions.get(i).getNumberOfSkippedEvaluations()), 23)).append("|\n");
         }
 
         // Output the final table